@@ -0,0 +1,157 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+
+/**
+ * Driver that does nothing, used to measure the per-iteration overhead 
+ * of the harness by running it through the regular warmup and run phases.
+ * It is executed in a throwaway class loader that defines its own copy of 
+ * the Japex classes, so that calibration does not affect how the JIT 
+ * compiles the call sites shared by all drivers.
+ */
+class CalibrationDriver extends JapexDriverBase {
+    
+    public void run(TestCase testCase) {
+    }
+    
+    /**
+     * Returns the average overhead of an iteration in nanoseconds, 
+     * measured by running this driver for the given number of warmup 
+     * and run iterations in a throwaway class loader.
+     */
+    static double measureLoopOverhead(long iterations) {
+        try {
+            ClassLoader loader = new IsolatingClassLoader(
+                CalibrationDriver.class.getClassLoader());
+            Method measure = loader.loadClass(CalibrationDriver.class.getName())
+                .getDeclaredMethod("measure", long.class);
+            measure.setAccessible(true);
+            return (Double) measure.invoke(null, iterations);
+        }
+        catch (Exception e) {
+            throw new JapexException(e);
+        }
+    }
+    
+    /**
+     * Runs this driver using japex.warmupIterations and japex.runIterations
+     * and returns the average duration of a run iteration in nanoseconds. 
+     * Called through reflection from the throwaway class loader.
+     */
+    static double measure(long iterations) {
+        ParamsImpl params = new ParamsImpl();
+        TestCaseImpl tc = new TestCaseImpl("calibration", params);
+        tc.setLongParam(Constants.WARMUP_ITERATIONS, iterations);
+        tc.setLongParam(Constants.RUN_ITERATIONS, iterations);
+        
+        ThreadResults results = new ThreadResults(1);
+        CalibrationDriver driver = new CalibrationDriver();
+        driver.setDriver(new DriverImpl("calibration", false, params));
+        driver.setThreadResults(results, 0);
+        driver.setTestCase(tc);
+        driver.warmup();
+        results.reset();
+        driver.run();
+        return Util.millisToNanos(1L) * results.getTimeSum() / 
+            results.getIterationsSum();
+    }
+    
+    /**
+     * Class loader that defines its own copy of every Japex class from
+     * the bytes available to its parent, and delegates all other classes.
+     */
+    static class IsolatingClassLoader extends ClassLoader {
+        
+        IsolatingClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+        
+        protected Class<?> loadClass(String name, boolean resolve) 
+            throws ClassNotFoundException 
+        {
+            if (!name.startsWith("com.sun.japex.")) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (this) {
+                Class<?> c = findLoadedClass(name);
+                if (c == null) {
+                    c = findClass(name);
+                }
+                if (resolve) {
+                    resolveClass(c);
+                }
+                return c;
+            }
+        }
+        
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            InputStream in = getParent().getResourceAsStream(
+                name.replace('.', '/') + ".class");
+            if (in == null) {
+                throw new ClassNotFoundException(name);
+            }
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, n);
+                }
+                byte[] bytes = out.toByteArray();
+                return defineClass(name, bytes, 0, bytes.length);
+            }
+            catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+            finally {
+                try {
+                    in.close();
+                }
+                catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+}
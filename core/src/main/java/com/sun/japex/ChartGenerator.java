@@ -57,6 +57,7 @@ import org.jfree.data.category.DefaultCategoryDataset;
 import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.chart.renderer.category.BarRenderer3D;
 import org.jfree.chart.renderer.category.LineAndShapeRenderer;
+import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
 
 public class ChartGenerator {
 
@@ -692,6 +693,105 @@ public class ChartGenerator {
         return nOfFiles;
     }
 
+    /**
+     * Generate charts of the results, and of the mean 99th percentile 
+     * latency if recorded, against the number of threads for drivers 
+     * expanded from japex.threadSweep. Returns the number of charts.
+     */
+    public int generateThreadSweepCharts(String baseName, String extension) {
+        int nOfFiles = 0;
+
+        try {
+            XYSeriesCollection resultDataset = new XYSeriesCollection();
+            XYSeriesCollection latencyDataset = new XYSeriesCollection();
+            Map<String, XYSeries> resultSeries = new LinkedHashMap<String, XYSeries>();
+            Map<String, XYSeries> latencySeries = new LinkedHashMap<String, XYSeries>();
+
+            for (DriverImpl di : _testSuite.getDriverInfoList()) {
+                if (!di.hasParam(Constants.THREAD_SWEEP_DRIVER)) {
+                    continue;
+                }
+                String name = di.getParam(Constants.THREAD_SWEEP_DRIVER);
+                int nOfThreads = di.getIntParam(Constants.NUMBER_OF_THREADS);
+
+                if (!resultSeries.containsKey(name)) {
+                    resultSeries.put(name, new XYSeries(name, true, false));
+                }
+                resultSeries.get(name).add(nOfThreads,
+                    di.getDoubleParamNoNaN(Constants.RESULT_ARIT_MEAN));
+
+                // Average 99th percentile latency over all tests
+                double latency = 0.0;
+                List<TestCaseImpl> testCases = di.getAggregateTestCases();
+                for (TestCaseImpl tc : testCases) {
+                    if (!tc.hasParam(Constants.LATENCY_P99)) {
+                        latency = Double.NaN;
+                        break;
+                    }
+                    latency += tc.getDoubleParamNoNaN(Constants.LATENCY_P99) / testCases.size();
+                }
+                if (!Double.isNaN(latency)) {
+                    if (!latencySeries.containsKey(name)) {
+                        latencySeries.put(name, new XYSeries(name, true, false));
+                    }
+                    latencySeries.get(name).add(nOfThreads, latency);
+                }
+            }
+
+            if (resultSeries.isEmpty()) {
+                return 0;
+            }
+            for (XYSeries series : resultSeries.values()) {
+                resultDataset.addSeries(series);
+            }
+            for (XYSeries series : latencySeries.values()) {
+                latencyDataset.addSeries(series);
+            }
+
+            String resultUnit = _testSuite.getParam(Constants.RESULT_UNIT);
+            JFreeChart chart = ChartFactory.createXYLineChart(
+                "Results per Number of Threads (" + resultUnit + ")",
+                "threads", resultUnit, resultDataset,
+                PlotOrientation.VERTICAL, true, true, false);
+            configureXYLineChart(chart);
+            chart.setAntiAlias(true);
+            ChartUtilities.saveChartAsJPEG(
+                new File(baseName + Integer.toString(nOfFiles++) + extension),
+                chart, _chartWidth, _chartHeight);
+
+            if (latencyDataset.getSeriesCount() > 0) {
+                chart = ChartFactory.createXYLineChart(
+                    "99th Percentile Latency per Number of Threads (us)",
+                    "threads", "us", latencyDataset,
+                    PlotOrientation.VERTICAL, true, true, false);
+                configureXYLineChart(chart);
+                chart.setAntiAlias(true);
+                ChartUtilities.saveChartAsJPEG(
+                    new File(baseName + Integer.toString(nOfFiles++) + extension),
+                    chart, _chartWidth, _chartHeight);
+            }
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return nOfFiles;
+    }
+
+    static private void configureXYLineChart(JFreeChart chart) {
+        XYPlot plot = chart.getXYPlot();
+        plot.setDomainGridlinePaint(Color.black);
+        plot.setRangeGridlinePaint(Color.black);
+        plot.getDomainAxis().setStandardTickUnits(NumberAxis.createIntegerTickUnits());
+
+        XYLineAndShapeRenderer renderer = new XYLineAndShapeRenderer(true, true);
+        renderer.setStroke(new BasicStroke(2.0f));
+        plot.setRenderer(renderer);
+    }
+
     static private void configureLineChart(JFreeChart chart) {
         CategoryPlot plot = chart.getCategoryPlot();
 
@@ -58,6 +58,9 @@ public class Constants {
      * This is intended for environments where Japex is embedded.
      */
     public static final String CONTEXT_CLASS_LOADER = "japex.contextClassLoader";
+    public static final String SUBTRACT_OVERHEAD = "japex.subtractOverhead";
+    public static final String RESULT_STREAM     = "japex.resultStream";
+    public static final String PARALLEL_DRIVERS  = "japex.parallelDrivers";
     
     // Global output parameters
     public static final String VERSION         = "japex.version";
@@ -79,6 +82,9 @@ public class Constants {
     public static final String CONFIG_FILE     = "japex.configFile";
     public static final String NUMBER_OF_CPUS  = "japex.numberOfCpus";
     public static final String HOST_NAME       = "japex.hostName";
+    public static final String TIMER_RESOLUTION_NS = "japex.timerResolutionNs";
+    public static final String TIMER_LATENCY_NS    = "japex.timerLatencyNs";
+    public static final String LOOP_OVERHEAD_NS    = "japex.loopOverheadNs";
     
     // Driver input parameters        
     public static final String DRIVER_CLASS       = "japex.driverClass";
@@ -90,6 +96,22 @@ public class Constants {
     public static final String NUMBER_OF_THREADS  = "japex.numberOfThreads";
     public static final String RUNS_PER_DRIVER    = "japex.runsPerDriver";
     public static final String WARMUPS_PER_DRIVER = "japex.warmupsPerDriver";
+    public static final String FORKS              = "japex.forks";
+    public static final String JVM_ARGS           = "japex.jvmArgs";
+    public static final String THREAD_MODE        = "japex.threadMode";   // platform | virtual
+    public static final String THREAD_SWEEP       = "japex.threadSweep";
+    public static final String TARGET_RELATIVE_ERROR = "japex.targetRelativeError";
+    public static final String CONFIDENCE_LEVEL   = "japex.confidenceLevel";
+    public static final String MAX_RUNS_PER_DRIVER = "japex.maxRunsPerDriver";
+    public static final String REJECT_OUTLIERS    = "japex.rejectOutliers";
+    public static final String REPORT_ALLOCATION  = "japex.reportAllocation";
+    public static final String REPORT_CPU_TIME    = "japex.reportCpuTime";
+    public static final String REPORT_GC_PAUSES   = "japex.reportGcPauses";
+    public static final String JFR                = "japex.jfr";
+    public static final String JFR_SETTINGS       = "japex.jfrSettings";
+    public static final String JFR_SCOPE          = "japex.jfrScope";   // driver | testCase
+    public static final String PROFILE            = "japex.profile";    // none | sampling
+    public static final String PROFILE_INTERVAL   = "japex.profileInterval";
     
     // Driver output parameters
     public static final String RESULT_ARIT_MEAN = "japex.resultAritMean";
@@ -109,6 +131,16 @@ public class Constants {
     public static final String PEAK_HEAP_USAGE = "japex.peakHeapUsage";
     public static final String REPORT_PEAK_HEAP_USAGE = "japex.reportPeakHeapUsage";
     
+    public static final String THREAD_SWEEP_DRIVER = "japex.threadSweepDriver";
+    public static final String SPEEDUP             = "japex.speedup";
+    public static final String PARALLEL_EFFICIENCY = "japex.parallelEfficiency";
+    public static final String USL_SIGMA           = "japex.uslSigma";
+    public static final String USL_KAPPA           = "japex.uslKappa";
+    public static final String USL_PEAK_THREADS    = "japex.uslPeakThreads";
+    
+    public static final String ACTUAL_RUNS_PER_DRIVER = "japex.actualRunsPerDriver";
+    public static final String JFR_FILE               = "japex.jfrFile";   // also a testcase output
+    
     // Testcase input parameters
     public static final String RUN_ITERATIONS    = "japex.runIterations";
     public static final String WARMUP_ITERATIONS = "japex.warmupIterations";
@@ -116,6 +148,17 @@ public class Constants {
     public static final String RUN_TIME          = "japex.runTime";
     public static final String INPUT_FILE        = "japex.inputFile";
     public static final String RUN_ITERATION_DELAY = "japex.runIterationDelay";
+    public static final String LATENCY_HISTOGRAM = "japex.latencyHistogram";
+    public static final String BATCH_SIZE        = "japex.batchSize";       // n | auto
+    public static final String TARGET_RATE       = "japex.targetRate";      // ops/sec
+    public static final String MAX_START_SKEW    = "japex.maxStartSkew";    // fraction of run time
+    public static final String WARMUP_MODE       = "japex.warmupMode";      // fixed | adaptive
+    public static final String WARMUP_INTERVAL   = "japex.warmupInterval";  // ms
+    public static final String WARMUP_WINDOW     = "japex.warmupWindow";    // intervals
+    public static final String WARMUP_MAX_CV     = "japex.warmupMaxCv";
+    public static final String WARMUP_MIN_TIME   = "japex.warmupMinTime";
+    public static final String WARMUP_MAX_TIME   = "japex.warmupMaxTime";
+    public static final String MAX_JIT_RERUNS    = "japex.maxJitReruns";
     
     // Testcase output parameters
     public static final String ACTUAL_RUN_ITERATIONS = "japex.actualRunIterations";
@@ -123,25 +166,102 @@ public class Constants {
     public static final String ACTUAL_RUN_TIME       = "japex.actualRunTime";
     public static final String ACTUAL_WARMUP_TIME    = "japex.actualWarmupTime";
     public static final String ACTUAL_PREPARE_TIME   = "japex.actualPrepareTime";        
+    public static final String ACTUAL_BATCH_SIZE     = "japex.actualBatchSize";
+    public static final String WARMUP_END_REASON     = "japex.warmupEndReason";  // steadyState | maxTime
+    public static final String JIT_COMPILATION_TIME  = "japex.jitCompilationTime";
+    public static final String CLASSES_LOADED        = "japex.classesLoaded";
+    public static final String JIT_SUSPECT           = "japex.jitSuspect";
+    public static final String JIT_RERUNS            = "japex.jitReruns";
+    public static final String ALLOCATED_BYTES_PER_OP = "japex.allocatedBytesPerOp";
+    public static final String CPU_TIME_PER_OP       = "japex.cpuTimePerOp";
+    public static final String USER_TIME_PER_OP      = "japex.userTimePerOp";
+    public static final String SYSTEM_TIME_PER_OP    = "japex.systemTimePerOp";
+    public static final String CPU_UTILIZATION       = "japex.cpuUtilization";
+    public static final String GC_PARAM_PREFIX       = "japex.gc";    // + collector + Count | Time | Max | P99
+    public static final String GC_PAUSE_COUNT        = "japex.gcPauseCount";
+    public static final String GC_PAUSE_TIME         = "japex.gcPauseTime";
+    public static final String GC_PAUSE_MAX          = "japex.gcPauseMax";
+    public static final String GC_PAUSE_P99          = "japex.gcPauseP99";
+    public static final String GC_PROMOTED_BYTES     = "japex.gcPromotedBytes";
+    public static final String GC_HEAP_AFTER_GC_MAX  = "japex.gcHeapAfterGcMax";
+    public static final String PROFILE_SAMPLES       = "japex.profileSamples";
+    public static final String PROFILE_OVERHEAD      = "japex.profileOverhead";
+    public static final String FLAME_GRAPH           = "japex.flameGraph";
+    public static final String OVERHEAD_TIME         = "japex.overheadTime";
     public static final String RESULT_VALUE          = "japex.resultValue";
     public static final String RESULT_ITERATIONS     = "japex.resultIterations";
     public static final String RESULT_TIME           = "japex.resultTime";    
     public static final String RESULT_VALUE_STDDEV   = "japex.resultValueStddev";
     public static final String RESULT_VALUE_X        = "japex.resultValueX";
     public static final String RESULT_VALUE_X_STDDEV = "japex.resultValueXStddev";
+    public static final String RESULT_VALUE_RELATIVE_ERROR = "japex.resultValueRelativeError";
+    public static final String RESULT_VALUE_MEDIAN   = "japex.resultValueMedian";
+    public static final String RESULT_VALUE_MAD      = "japex.resultValueMad";
+    public static final String RESULT_VALUE_MIN      = "japex.resultValueMin";
+    public static final String RESULT_VALUE_MAX      = "japex.resultValueMax";
+    public static final String RESULT_VALUE_CI_LOW   = "japex.resultValueCiLow";
+    public static final String RESULT_VALUE_CI_HIGH  = "japex.resultValueCiHigh";
+    public static final String RESULT_VALUE_BOOTSTRAP_CI_LOW  = "japex.resultValueBootstrapCiLow";
+    public static final String RESULT_VALUE_BOOTSTRAP_CI_HIGH = "japex.resultValueBootstrapCiHigh";
+    public static final String REJECTED_RUNS         = "japex.rejectedRuns";
+    public static final String RESULT_RATIO          = "japex.resultRatio";
+    public static final String RESULT_RATIO_CI_LOW   = "japex.resultRatioCiLow";
+    public static final String RESULT_RATIO_CI_HIGH  = "japex.resultRatioCiHigh";
+    public static final String WITHIN_FORK_STDDEV    = "japex.withinForkStddev";
+    public static final String BETWEEN_FORK_STDDEV   = "japex.betweenForkStddev";
     
     public static final String WARMUP_ITERATIONS_SUM = "japex.warmupIterationsSum";
     public static final String WARMUP_TIME_SUM       = "japex.warmupTimeSum";
     public static final String RUN_ITERATIONS_SUM    = "japex.runIterationsSum";
     public static final String RUN_TIME_SUM          = "japex.runTimeSum";
     
+    public static final String LATENCY_MEAN = "japex.latencyMean";
+    public static final String LATENCY_P50  = "japex.latencyP50";
+    public static final String LATENCY_P90  = "japex.latencyP90";
+    public static final String LATENCY_P99  = "japex.latencyP99";
+    public static final String LATENCY_P999 = "japex.latencyP999";
+    public static final String LATENCY_MAX  = "japex.latencyMax";
+    
+    public static final String CORRECTED_LATENCY_MEAN = "japex.correctedLatencyMean";
+    public static final String CORRECTED_LATENCY_P50  = "japex.correctedLatencyP50";
+    public static final String CORRECTED_LATENCY_P90  = "japex.correctedLatencyP90";
+    public static final String CORRECTED_LATENCY_P99  = "japex.correctedLatencyP99";
+    public static final String CORRECTED_LATENCY_P999 = "japex.correctedLatencyP999";
+    public static final String CORRECTED_LATENCY_MAX  = "japex.correctedLatencyMax";
+    public static final String ACHIEVED_RATE          = "japex.achievedRate";
+    
+    public static final String CARRIER_UTILIZATION = "japex.carrierUtilization";
+    public static final String PINNED_EVENTS       = "japex.pinnedEvents";
+    
+    public static final String START_SKEW          = "japex.startSkew";
+    public static final String STRAGGLER_TIME      = "japex.stragglerTime";
+    public static final String START_SKEW_EXCEEDED = "japex.startSkewExceeded";
+    
     // Default values
     public static final String DEFAULT_WARMUP_ITERATIONS  = "300";
     public static final String DEFAULT_RUN_ITERATIONS     = "300";
     public static final String DEFAULT_RUN_ITERATION_DELAY = "0";
     public static final String DEFAULT_NUMBER_OF_THREADS  = "1";
     public static final String DEFAULT_RUNS_PER_DRIVER    = "1";
+    public static final String DEFAULT_CONFIDENCE_LEVEL   = "0.95";
+    public static final String DEFAULT_MAX_RUNS_PER_DRIVER = "30";
+    public static final String DEFAULT_MAX_START_SKEW     = "0.01";
+    public static final String DEFAULT_JFR_SETTINGS       = "profile";
+    public static final String DEFAULT_JFR_SCOPE          = "driver";
+    public static final String DEFAULT_PROFILE_INTERVAL   = "10";
+    public static final String DEFAULT_WARMUP_INTERVAL    = "100";
+    public static final String DEFAULT_WARMUP_WINDOW      = "5";
+    public static final String DEFAULT_WARMUP_MAX_CV      = "0.02";
+    public static final String DEFAULT_WARMUP_MIN_TIME    = "1";
+    public static final String DEFAULT_WARMUP_MAX_TIME    = "02:00";
     public static final String DEFAULT_REPORTS_DIRECTORY  = "reports";
+    public static final String DEFAULT_RESULT_STREAM      = "true";
+    public static final String DEFAULT_PARALLEL_DRIVERS   = "1";
+    
+    /**
+     * File in the report directory to which results are streamed.
+     */
+    public static final String RESULT_STREAM_FILE         = "results.jsonl";
     public static final String DEFAULT_CHART_TYPE         = "barchart";
     public static final String DEFAULT_RESULT_AXIS        = "normal";
     public static final String DEFAULT_PLOT_DRIVERS       = "false";
@@ -45,6 +45,55 @@ import static com.sun.japex.Constants.*;
 
 public class DriverImpl extends ParamsImpl implements Driver, Cloneable {
     
+    /**
+     * Test case output params that are averaged across runs, if set.
+     */
+    static final String[] AVERAGED_PARAMS = {
+        LATENCY_MEAN, LATENCY_P50, LATENCY_P90, LATENCY_P99, LATENCY_P999,
+        CORRECTED_LATENCY_MEAN, CORRECTED_LATENCY_P50, CORRECTED_LATENCY_P90,
+        CORRECTED_LATENCY_P99, CORRECTED_LATENCY_P999, ACTUAL_BATCH_SIZE,
+        ACHIEVED_RATE, CARRIER_UTILIZATION, PINNED_EVENTS, ACTUAL_WARMUP_ITERATIONS,
+        JIT_COMPILATION_TIME, CLASSES_LOADED, JIT_RERUNS, ALLOCATED_BYTES_PER_OP,
+        CPU_TIME_PER_OP, USER_TIME_PER_OP, SYSTEM_TIME_PER_OP, CPU_UTILIZATION,
+        PROFILE_SAMPLES, PROFILE_OVERHEAD
+    };
+    
+    /**
+     * Test case output params whose maximum across runs is reported, if set.
+     */
+    static final String[] MAXIMUM_PARAMS = {
+        LATENCY_MAX, CORRECTED_LATENCY_MAX, START_SKEW, STRAGGLER_TIME
+    };
+    
+    /**
+     * Boolean test case output params that are true if true in any run.
+     */
+    static final String[] ANY_PARAMS = {
+        START_SKEW_EXCEEDED, JIT_SUSPECT
+    };
+    
+    /**
+     * Test case output params whose value in the last run is reported, 
+     * such as links to files in the report directory or the environment
+     * of the worker that executed the test case.
+     */
+    static final String[] LAST_RUN_PARAMS = {
+        JFR_FILE, FLAME_GRAPH, HOST_NAME, OS_NAME, OS_ARCHITECTURE, VM_INFO
+    };
+    
+    /**
+     * Number of resamples and seed used for bootstrap confidence intervals.
+     * A fixed seed makes reports reproducible for the same results.
+     */
+    static final int BOOTSTRAP_RESAMPLES = 1000;
+    static final long BOOTSTRAP_SEED = 0L;
+    
+    /**
+     * Multiple of the interquartile range beyond which results are 
+     * rejected as outliers when japex.rejectOutliers is true.
+     */
+    static final double TUKEY_FENCE_FACTOR = 1.5;
+    
     /**
      * This driver's name.
      */
@@ -73,9 +122,14 @@ public class DriverImpl extends ParamsImpl implements Driver, Cloneable {
     Class<? extends JapexDriverBase> _class = null;
     
     /**
-     * Array of tests cases for this driver.
+     * List of tests cases for each run of this driver.
      */     
-    TestCaseArrayList[] _testCases;
+    List<TestCaseArrayList> _testCases;
+    
+    /**
+     * Test cases from which those of additional runs are cloned.
+     */
+    TestCaseArrayList _templateTestCases;
     
     /**
      * Aggregate results for this driver.
@@ -106,39 +160,122 @@ public class DriverImpl extends ParamsImpl implements Driver, Cloneable {
         int warmupsPerDriver = getIntParam(WARMUPS_PER_DRIVER);
         
         int actualRuns = runsPerDriver + warmupsPerDriver;
-        _testCases = new TestCaseArrayList[actualRuns];
+        _testCases = new ArrayList<TestCaseArrayList>(actualRuns);
         for (int i = 0; i < actualRuns; i++) {
-            _testCases[i] = (TestCaseArrayList) testCases.clone();
+            _testCases.add((TestCaseArrayList) testCases.clone());
         }        
         _aggregateTestCases = (TestCaseArrayList) testCases.clone();
+        _templateTestCases = testCases;
+    }
+    
+    /**
+     * Returns a copy of this driver with a different name and its own 
+     * test cases, without any results.
+     */
+    public DriverImpl copy(String name) {
+        DriverImpl copy = (DriverImpl) clone();
+        copy._name = name;
+        copy._computeMeans = true;
+        copy.setTestCases(_templateTestCases);
+        return copy;
+    }
+    
+    /**
+     * Add a new run to this driver, after those given by japex.runsPerDriver
+     * and japex.warmupsPerDriver, and return its index. Runs added this 
+     * way are included in the driver's aggregates.
+     */
+    public int addRun() {
+        _testCases.add((TestCaseArrayList) _templateTestCases.clone());
+        _computeMeans = true;
+        return _testCases.size() - 1;
+    }
+    
+    /**
+     * Remove every test case other than the named one from all runs of
+     * this driver, as done in child JVMs executing a single test case.
+     */
+    public void retainTestCase(String name) {
+        TestCaseArrayList testCases = new TestCaseArrayList();
+        for (TestCaseImpl tc : _templateTestCases) {
+            if (tc.getName().equals(name)) {
+                testCases.add(tc);
+            }
+        }
+        if (testCases.size() == 0) {
+            throw new JapexException("Unable to find test case '" + name 
+                + "' in driver '" + _name + "'");
+        }
+        setTestCases(testCases);
+    }
+    
+    /**
+     * Returns the largest relative error of japex.resultValue over all
+     * test cases, computed from the measured runs executed so far that
+     * are not rejected as outliers. Test cases whose result is not a 
+     * number are ignored as more runs would not improve them.
+     */
+    public double getMaxRelativeError() {
+        int nOfTests = _testCases.get(0).size();
+        
+        double maxRelativeError = 0.0;
+        for (int n = 0; n < nOfTests; n++) {
+            double relativeError = getRelativeError(getMeasuredResults(n));
+            if (!Double.isNaN(relativeError)) {
+                maxRelativeError = Math.max(maxRelativeError, relativeError);
+            }
+        }
+        return maxRelativeError;
+    }
+    
+    /**
+     * Returns the half-width of the confidence interval of the mean of
+     * the results, at japex.confidenceLevel, relative to the mean.
+     */
+    private double getRelativeError(double[] results) {
+        return Util.confidenceHalfWidth(results, 0, getConfidenceLevel()) / 
+            Math.abs(Util.arithmeticMean(results));
+    }
+    
+    /**
+     * Returns the number of runs of this driver, including warmup runs.
+     */
+    public int getNumberOfRuns() {
+        return _testCases.size();
     }
         
     private void computeMeans() {
-        int runsPerDriver = getIntParam(RUNS_PER_DRIVER);        
         int warmupsPerDriver = getIntParam(WARMUPS_PER_DRIVER);        
                 
-        // Define start run and actual runs 
+        // Define start run and actual runs, including those added
         int startRun = warmupsPerDriver;    // skip warmups
-        int actualRuns = runsPerDriver + warmupsPerDriver;
+        int actualRuns = _testCases.size();
         
         // Avoid re-computing the driver's aggregates
         if (_computeMeans) {
-            final int nOfTests = _testCases[0].size();
+            final int nOfTests = _testCases.get(0).size();
+            
+            // Results of every test in every run, used for horizontal stddevs
+            double[][] allResults = new double[nOfTests][];
+            double[][] allResultsX = new double[nOfTests][];
+            
+            // Runs rejected as outliers of any test
+            boolean[] anyOutliers = new boolean[actualRuns];
 
             for (int n = 0; n < nOfTests; n++) {
 
                 double[] results = new double[actualRuns];
                 double[] resultsX = new double[actualRuns];
-                long[] resultIterations = new long[actualRuns];
+                double[] resultIterations = new double[actualRuns];
                 double[] resultTime = new double[actualRuns];
                 
                 // Set hasResultValueX - should be the same for all runs
-                TestCaseImpl startRunTc = (TestCaseImpl) _testCases[startRun].get(n);
+                TestCaseImpl startRunTc = (TestCaseImpl) _testCases.get(startRun).get(n);
                 boolean hasResultValueX = startRunTc.hasParam(RESULT_VALUE_X);
                 
                 // Collect vertical results for this test
                 for (int i = startRun; i < actualRuns; i++) {            
-                    TestCaseImpl tc = (TestCaseImpl) _testCases[i].get(n);
+                    TestCaseImpl tc = (TestCaseImpl) _testCases.get(i).get(n);
                     results[i] = tc.getDoubleParam(RESULT_VALUE);
                     resultTime[i] = tc.getDoubleParam(ACTUAL_RUN_TIME);
                     resultIterations[i] = tc.getLongParam(RUN_ITERATIONS_SUM);
@@ -147,25 +284,102 @@ public class DriverImpl extends ParamsImpl implements Driver, Cloneable {
                     }
                 }
                 
-                // Compute vertical average and stddev for this test
+                allResults[n] = results;
+                allResultsX[n] = hasResultValueX ? resultsX : null;
+                
+                // Exclude outlier runs, if requested, from all the aggregates 
+                // of this test except for the params of the last run, which 
+                // describe the environment rather than a measurement
                 TestCaseImpl tc = (TestCaseImpl) _aggregateTestCases.get(n);
+                boolean[] outliers = findOutliers(results, startRun);
+                for (int i = startRun; i < actualRuns; i++) {
+                    anyOutliers[i] |= outliers[i];
+                }
+                double[] measuredResults = selectRuns(results, startRun, outliers);
+                double[] measuredResultsX = selectRuns(resultsX, startRun, outliers);
+                double[] measuredTime = selectRuns(resultTime, startRun, outliers);
+                double[] measuredIterations = selectRuns(resultIterations, startRun, outliers);
+                if (getBooleanParam(REJECT_OUTLIERS)) {
+                    tc.setParam(REJECTED_RUNS, formatRuns(outliers, startRun));
+                }
+                
+                // Compute vertical average and stddev for this test
                 tc.setDoubleParam(RESULT_VALUE, 
-                                  Util.arithmeticMean(results, startRun));
+                                  Util.arithmeticMean(measuredResults));
                 tc.setDoubleParam(RESULT_TIME, 
-                                  Util.arithmeticMean(resultTime, startRun) / 1000);
+                                  Util.arithmeticMean(measuredTime) / 1000);
                 tc.setDoubleParam(RESULT_ITERATIONS,
-                                  Util.arithmeticMean(resultIterations, startRun));
+                                  Util.arithmeticMean(measuredIterations));
                 if (hasResultValueX) {
                     tc.setDoubleParam(RESULT_VALUE_X, 
-                                      Util.arithmeticMean(resultsX, startRun));                    
+                                      Util.arithmeticMean(measuredResultsX));                    
                 }                
-                if (actualRuns - startRun > 1) {
+                for (String name : AVERAGED_PARAMS) {
+                    if (startRunTc.hasParam(name)) {
+                        tc.setDoubleParam(name, Util.arithmeticMean(selectRuns(
+                            collectParam(n, name, actualRuns), startRun, outliers)));
+                    }
+                }
+                for (String name : MAXIMUM_PARAMS) {
+                    if (startRunTc.hasParam(name)) {
+                        tc.setDoubleParam(name, maximum(selectRuns(
+                            collectParam(n, name, actualRuns), startRun, outliers)));
+                    }
+                }
+                for (String name : ANY_PARAMS) {
+                    if (startRunTc.hasParam(name)) {
+                        boolean any = false;
+                        for (int i = startRun; i < actualRuns; i++) {
+                            if (outliers[i]) {
+                                continue;
+                            }
+                            TestCaseImpl runTc = (TestCaseImpl) _testCases.get(i).get(n);
+                            any |= runTc.hasParam(name) && runTc.getBooleanParam(name);
+                        }
+                        tc.setBooleanParam(name, any);
+                    }
+                }
+                for (String name : startRunTc.getLocalParams()) {
+                    if (name.startsWith(GC_PARAM_PREFIX)) {
+                        double[] values = selectRuns(
+                            collectParam(n, name, actualRuns), startRun, outliers);
+                        tc.setDoubleParam(name, name.endsWith("Max") ? 
+                            maximum(values) : Util.arithmeticMean(values));
+                    }
+                }
+                TestCaseImpl lastRunTc = (TestCaseImpl) _testCases.get(actualRuns - 1).get(n);
+                for (String name : LAST_RUN_PARAMS) {
+                    if (lastRunTc.hasParam(name)) {
+                        tc.setParam(name, lastRunTc.getParam(name));
+                    }
+                }
+                if (startRunTc.hasParam(WARMUP_END_REASON)) {
+                    String reason = "steadyState";
+                    for (int i = startRun; i < actualRuns; i++) {
+                        TestCaseImpl runTc = (TestCaseImpl) _testCases.get(i).get(n);
+                        if (!outliers[i] && runTc.hasParam(WARMUP_END_REASON) && 
+                            !runTc.getParam(WARMUP_END_REASON).equals("steadyState")) 
+                        {
+                            reason = runTc.getParam(WARMUP_END_REASON);
+                        }
+                    }
+                    tc.setParam(WARMUP_END_REASON, reason);
+                }
+                if (measuredResults.length > 1) {
                     tc.setDoubleParam(RESULT_VALUE_STDDEV, 
-                                      Util.standardDev(results, startRun));
+                                      Util.standardDev(measuredResults));
                     if (hasResultValueX) {
                         tc.setDoubleParam(RESULT_VALUE_X_STDDEV, 
-                                          Util.standardDev(resultsX, startRun));                        
+                                          Util.standardDev(measuredResultsX));                        
                     }
+                    setRobustStatistics(tc, measuredResults);
+                }
+                if (hasParam(FORKS) && getIntParam(FORKS) > 1) {
+                    setForkStddevs(tc, results, startRun, outliers);
+                }
+                if (hasParam(TARGET_RELATIVE_ERROR) && measuredResults.length > 1) {
+                    tc.setDoubleParam(RESULT_VALUE_RELATIVE_ERROR,
+                        getRelativeError(measuredResults));
                 }
             }
             
@@ -217,60 +431,236 @@ public class DriverImpl extends ParamsImpl implements Driver, Cloneable {
             // Avoid re-computing these means
             _computeMeans = false;
             
-            // If number of runs is just 1, we're done
-            if (actualRuns - startRun == 1) {
+            // Runs rejected as outliers of any test are excluded from the 
+            // stddevs of the horizontal means. If only 1 run is left, we're done
+            int measuredRuns = 0;
+            for (int i = startRun; i < actualRuns; i++) {
+                if (!anyOutliers[i]) {
+                    measuredRuns++;
+                }
+            }
+            if (measuredRuns <= 1) {
                 return;
             }
             
-            // geometric mean = (sum{i,n} x_i) / n
-            geomMeanresult = 1.0;
-            // arithmetic mean = (prod{i,n} x_i)^(1/n)
-            aritMeanresult = 0.0;
-            // harmonic mean inverse = sum{i,n} 1/(n * x_i)
-            harmMeanresultInverse = 0.0;
-            
-            // geometric mean = (sum{i,n} x_i) / n
-            geomMeanresultX = 1.0;
-            // arithmetic mean = (prod{i,n} x_i)^(1/n)
-            aritMeanresultX = 0.0;
-            // harmonic mean inverse = sum{i,n} 1/(n * x_i)
-            harmMeanresultXInverse = 0.0;
-            
-            boolean setStddevsAxisX = false;
-            
-            // Compute horizontal stddevs based on vertical stddevs
-            tci = _aggregateTestCases.iterator();
-            while (tci.hasNext()) {
-                TestCaseImpl tc = (TestCaseImpl) tci.next();       
-                
-                // Compute running means 
-                double result = tc.getDoubleParam(RESULT_VALUE_STDDEV);
-                aritMeanresult += result / nOfTests;
-                geomMeanresult *= Math.pow(result, 1.0 / nOfTests);
-                harmMeanresultInverse += 1.0 / (nOfTests * result);
-                if (tc.hasParam(RESULT_VALUE_X_STDDEV)) {
-                    double resultX = tc.getDoubleParam(RESULT_VALUE_X_STDDEV);
-                    aritMeanresultX += resultX / nOfTests;
-                    geomMeanresultX *= Math.pow(resultX, 1.0 / nOfTests);
-                    harmMeanresultXInverse += 1.0 / (nOfTests * resultX);
-                    setStddevsAxisX = true;
+            // Compute the horizontal means of each measured run
+            double[] aritMeans = new double[measuredRuns];
+            double[] geomMeans = new double[measuredRuns];
+            double[] harmMeans = new double[measuredRuns];
+            double[] aritMeansX = new double[measuredRuns];
+            double[] geomMeansX = new double[measuredRuns];
+            double[] harmMeansX = new double[measuredRuns];
+            for (int i = 0, run = startRun; i < measuredRuns; i++, run++) {
+                while (anyOutliers[run]) {
+                    run++;
+                }
+                double[] runResults = new double[nOfTests];
+                double[] runResultsX = new double[nOfTests];
+                for (int n = 0; n < nOfTests; n++) {
+                    runResults[n] = allResults[n][run];
+                    if (setMeansAxisX) {
+                        runResultsX[n] = allResultsX[n] != null ? 
+                            allResultsX[n][run] : Double.NaN;
+                    }
+                }
+                aritMeans[i] = Util.arithmeticMean(runResults);
+                geomMeans[i] = geometricMean(runResults);
+                harmMeans[i] = harmonicMean(runResults);
+                if (setMeansAxisX) {
+                    aritMeansX[i] = Util.arithmeticMean(runResultsX);
+                    geomMeansX[i] = geometricMean(runResultsX);
+                    harmMeansX[i] = harmonicMean(runResultsX);
                 }
             }
             
-            // Set driver-specific params
-            setDoubleParam(RESULT_ARIT_MEAN_STDDEV, aritMeanresult);
-            setDoubleParam(RESULT_GEOM_MEAN_STDDEV, geomMeanresult);
-            setDoubleParam(RESULT_HARM_MEAN_STDDEV, 1.0 / harmMeanresultInverse);            
-            if (setStddevsAxisX) {
-                setDoubleParam(RESULT_ARIT_MEAN_X_STDDEV, aritMeanresultX);
-                setDoubleParam(RESULT_GEOM_MEAN_X_STDDEV, geomMeanresultX);
-                setDoubleParam(RESULT_HARM_MEAN_X_STDDEV, 1.0 / harmMeanresultXInverse);                        
+            // Set driver-specific params, the stddevs of the horizontal means
+            // being computed across runs rather than averaged across tests
+            setDoubleParam(RESULT_ARIT_MEAN_STDDEV, Util.standardDev(aritMeans));
+            setDoubleParam(RESULT_GEOM_MEAN_STDDEV, Util.standardDev(geomMeans));
+            setDoubleParam(RESULT_HARM_MEAN_STDDEV, Util.standardDev(harmMeans));            
+            if (setMeansAxisX) {
+                setDoubleParam(RESULT_ARIT_MEAN_X_STDDEV, Util.standardDev(aritMeansX));
+                setDoubleParam(RESULT_GEOM_MEAN_X_STDDEV, Util.standardDev(geomMeansX));
+                setDoubleParam(RESULT_HARM_MEAN_X_STDDEV, Util.standardDev(harmMeansX));                        
             }
         }        
     }
     
+    private static double maximum(double[] values) {
+        double max = values[0];
+        for (int i = 1; i < values.length; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return max;
+    }
+    
+    private static double geometricMean(double[] values) {
+        double mean = 1.0;
+        for (int i = 0; i < values.length; i++) {
+            mean *= Math.pow(values[i], 1.0 / values.length);
+        }
+        return mean;
+    }
+    
+    private static double harmonicMean(double[] values) {
+        double meanInverse = 0.0;
+        for (int i = 0; i < values.length; i++) {
+            meanInverse += 1.0 / (values.length * values[i]);
+        }
+        return 1.0 / meanInverse;
+    }
+    
+    /**
+     * Set the median, median absolute deviation, minimum, maximum and
+     * confidence intervals of the mean of the results of a test case. 
+     * Two intervals are computed at japex.confidenceLevel: one based on 
+     * the Student's t-distribution, which assumes results are normally 
+     * distributed, and a bootstrap interval, which does not.
+     */
+    private void setRobustStatistics(TestCaseImpl tc, double[] results) {
+        double mean = Util.arithmeticMean(results);
+        double confidenceLevel = getConfidenceLevel();
+        double halfWidth = Util.confidenceHalfWidth(results, 0, confidenceLevel);
+        double[] bootstrap = Util.bootstrapConfidenceInterval(results, 
+            confidenceLevel, BOOTSTRAP_RESAMPLES, new Random(BOOTSTRAP_SEED));
+        double min = results[0], max = results[0];
+        for (int i = 1; i < results.length; i++) {
+            min = Math.min(min, results[i]);
+            max = Math.max(max, results[i]);
+        }
+        
+        tc.setDoubleParam(RESULT_VALUE_MEDIAN, Util.median(results));
+        tc.setDoubleParam(RESULT_VALUE_MAD, Util.medianAbsoluteDeviation(results));
+        tc.setDoubleParam(RESULT_VALUE_MIN, min);
+        tc.setDoubleParam(RESULT_VALUE_MAX, max);
+        tc.setDoubleParam(RESULT_VALUE_CI_LOW, mean - halfWidth);
+        tc.setDoubleParam(RESULT_VALUE_CI_HIGH, mean + halfWidth);
+        tc.setDoubleParam(RESULT_VALUE_BOOTSTRAP_CI_LOW, bootstrap[0]);
+        tc.setDoubleParam(RESULT_VALUE_BOOTSTRAP_CI_HIGH, bootstrap[1]);
+    }
+    
+    /**
+     * Returns, for every run, whether its result lies outside the Tukey 
+     * fences of the results of the measured runs. No run is an outlier 
+     * unless japex.rejectOutliers is true.
+     */
+    private boolean[] findOutliers(double[] results, int startRun) {
+        boolean[] outliers = new boolean[results.length];
+        if (getBooleanParam(REJECT_OUTLIERS) && results.length - startRun > 2) {
+            double[] fences = Util.tukeyFences(
+                selectRuns(results, startRun, outliers), TUKEY_FENCE_FACTOR);
+            for (int i = startRun; i < results.length; i++) {
+                outliers[i] = results[i] < fences[0] || results[i] > fences[1];
+            }
+        }
+        return outliers;
+    }
+    
+    /**
+     * Returns the values of the measured runs that are not outliers.
+     */
+    private static double[] selectRuns(double[] values, int startRun, boolean[] outliers) {
+        int count = 0;
+        for (int i = startRun; i < values.length; i++) {
+            if (!outliers[i]) {
+                count++;
+            }
+        }
+        double[] selected = new double[count];
+        for (int i = startRun, j = 0; i < values.length; i++) {
+            if (!outliers[i]) {
+                selected[j++] = values[i];
+            }
+        }
+        return selected;
+    }
+    
+    /**
+     * Returns a comma-separated list of the numbers of the outlier runs,
+     * counting measured runs from 1, or 'none'.
+     */
+    private static String formatRuns(boolean[] outliers, int startRun) {
+        StringBuffer buffer = new StringBuffer();
+        for (int i = startRun; i < outliers.length; i++) {
+            if (outliers[i]) {
+                if (buffer.length() > 0) {
+                    buffer.append(',');
+                }
+                buffer.append(i - startRun + 1);
+            }
+        }
+        return buffer.length() > 0 ? buffer.toString() : "none";
+    }
+    
+    /**
+     * Returns the results of a test case in the measured runs of this
+     * driver, excluding those rejected as outliers.
+     */
+    public double[] getMeasuredResults(int n) {
+        int startRun = getIntParam(WARMUPS_PER_DRIVER);
+        double[] results = collectParam(n, RESULT_VALUE, _testCases.size());
+        return selectRuns(results, startRun, findOutliers(results, startRun));
+    }
+    
+    double getConfidenceLevel() {
+        return Double.parseDouble(hasParam(CONFIDENCE_LEVEL) ?
+            getParam(CONFIDENCE_LEVEL) : DEFAULT_CONFIDENCE_LEVEL);
+    }
+    
+    /**
+     * Split the results of the measured runs by fork, each fork having
+     * executed japex.runsPerDriver of them, and set the standard deviation
+     * of the results within a fork (averaged over all forks) and that of 
+     * the mean results of each fork. Outlier runs are excluded, as well
+     * as forks all of whose runs are outliers.
+     */
+    private void setForkStddevs(TestCaseImpl tc, double[] results, int startRun,
+        boolean[] outliers) 
+    {
+        int runsPerFork = getIntParam(RUNS_PER_DRIVER);
+        int nOfForks = (results.length - startRun) / runsPerFork;
+        
+        double withinVariance = 0.0;
+        double[] forkMeans = new double[nOfForks];
+        int measuredForks = 0;
+        for (int f = 0; f < nOfForks; f++) {
+            int forkStart = startRun + f * runsPerFork;
+            double[] forkResults = new double[runsPerFork];
+            boolean[] forkOutliers = new boolean[runsPerFork];
+            System.arraycopy(results, forkStart, forkResults, 0, runsPerFork);
+            System.arraycopy(outliers, forkStart, forkOutliers, 0, runsPerFork);
+            forkResults = selectRuns(forkResults, 0, forkOutliers);
+            if (forkResults.length > 0) {
+                forkMeans[measuredForks++] = Util.arithmeticMean(forkResults);
+                double stddev = Util.standardDev(forkResults);
+                withinVariance += stddev * stddev;
+            }
+        }
+        if (measuredForks == 0) {
+            return;
+        }
+        
+        double[] measuredForkMeans = new double[measuredForks];
+        System.arraycopy(forkMeans, 0, measuredForkMeans, 0, measuredForks);
+        tc.setDoubleParam(WITHIN_FORK_STDDEV, Math.sqrt(withinVariance / measuredForks));
+        tc.setDoubleParam(BETWEEN_FORK_STDDEV, Util.standardDev(measuredForkMeans));
+    }
+    
+    /**
+     * Returns the values of a test case param in every run, using NaN 
+     * for runs in which it is undefined.
+     */
+    private double[] collectParam(int n, String name, int actualRuns) {
+        double[] values = new double[actualRuns];
+        for (int i = 0; i < actualRuns; i++) {
+            TestCaseImpl tc = (TestCaseImpl) _testCases.get(i).get(n);
+            values[i] = tc.hasParam(name) ? tc.getDoubleParam(name) : Double.NaN;
+        }
+        return values;
+    }
+    
     public List<TestCaseImpl> getTestCases(int driverRun) {
-        return _testCases[driverRun];
+        return _testCases.get(driverRun);
     }
     
     public List<TestCaseImpl> getAggregateTestCases() {
@@ -40,9 +40,12 @@ package com.sun.japex;
 
 import java.util.*;
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.concurrent.*;
 import java.lang.management.*;
+import javax.management.JMException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -68,6 +71,27 @@ import static com.sun.japex.Constants.*;
 public class Engine {
 	private final static Logger LOG = LoggerFactory.getLogger(Engine.class);
     
+    /**
+     * Number of samples and iterations used to calibrate the timer
+     * and the harness overhead.
+     */
+    static final int CALIBRATION_TIMER_SAMPLES = 1000;
+    static final int CALIBRATION_TIMER_CALLS = 100000;
+    static final long CALIBRATION_ITERATIONS = 10000000L;
+    
+    /**
+     * Fraction of the run phase above which time spent in JIT compilation
+     * marks the result as suspect. A few milliseconds of compilation of 
+     * rarely executed code during a long run phase are harmless.
+     */
+    static final double JIT_SUSPECT_FRACTION = 0.01;
+    
+    /**
+     * Fraction of the maximum heap above which the latency histograms of
+     * all the threads of a driver cause a warning.
+     */
+    static final double HISTOGRAM_HEAP_FRACTION = 0.1;
+    
     /**
      * The test suite being executed by this engine.
      */
@@ -83,11 +107,65 @@ public class Engine {
      */
     JapexDriverBase _drivers[][];
     
+    /**
+     * Per-thread accumulators for the warmup and run phases, merged into
+     * the test case once all threads have completed a phase.
+     */
+    ThreadResults _threadResults;
+    
     /**
      * Current driver being executed.
      */
     DriverImpl _driverImpl;
     
+    /**
+     * Class loader of the current driver.
+     */
+    ClassLoader _classLoader;
+    
+    /**
+     * True if the current driver is executed on virtual threads, in 
+     * which case driver instances for a run are only allocated when
+     * the run starts and terminated when it ends.
+     */
+    boolean _virtualThreads;
+    
+    VirtualThreadMonitor _virtualThreadMonitor = new VirtualThreadMonitor();
+    
+    /**
+     * Recorder of GC pauses during run phases, if enabled.
+     */
+    GcPauseRecorder _gcPauseRecorder = new GcPauseRecorder();
+    
+    /**
+     * Stack-sampling profiler used during run phases, if enabled.
+     */
+    SamplingProfiler _samplingProfiler = new SamplingProfiler();
+    
+    /**
+     * Collapsed stacks sampled in every run of each test case of the
+     * current driver, by test case name.
+     */
+    Map<String, Map<String, Integer>> _profiles = 
+        new LinkedHashMap<String, Map<String, Integer>>();
+    
+    /**
+     * Progress of this engine, exposed through JMX.
+     */
+    EngineMonitor _monitor = new EngineMonitor();
+    
+    /**
+     * Listeners notified as the test suite executes.
+     */
+    List<EngineListener> _listeners = new ArrayList<EngineListener>();
+    
+    /**
+     * Params of the test cases completed before resuming, by the key 
+     * returned by <code>ResultStreamListener.getKey()</code>, or null 
+     * if not resuming.
+     */
+    Map<String, Map<String, String>> _resumedResults;
+    
     /**
      * Current driver run being executed.
      */
@@ -128,6 +206,71 @@ public class Engine {
      */
     long _beforeHeapMemoryUsage;
     
+    /**
+     * Used to merge the latency histograms of all threads
+     */
+    LatencyHistogram _latencyHistogram = new LatencyHistogram();
+    
+    /**
+     * Harness overhead measured during calibration, in nanoseconds
+     */
+    long _timerResolution;
+    double _timerLatency;
+    double _loopOverhead;
+    
+    /**
+     * True once the harness overhead has been measured by this engine
+     * or passed by the parent JVM.
+     */
+    boolean _calibrated;
+    
+    /**
+     * Prevents the JIT from eliminating the calibration of the timer 
+     */
+    long _calibrationSink;
+    
+    /**
+     * Config files from which the test suite was loaded, passed to 
+     * child JVMs when japex.forks is set.
+     */
+    List<String> _configFiles;
+    
+    /**
+     * Name of the only driver to execute if this engine runs in a 
+     * child JVM, or null otherwise.
+     */
+    String _forkedDriver;
+    
+    /**
+     * Name of the only test case of the driver to execute if this engine
+     * runs in a child JVM on behalf of a worker, or null otherwise.
+     */
+    String _forkedTestCase;
+    
+    /**
+     * Port on which workers connect if the test suite is distributed, 
+     * see {@link JapexCoordinator}, or -1 otherwise.
+     */
+    int _coordinatorPort = -1;
+    
+    /**
+     * Address on which the coordinator listens, or null for the loopback
+     * interface.
+     */
+    String _coordinatorAddress;
+    
+    /**
+     * Directory in which the reports of this execution are generated,
+     * passed to child JVMs when japex.forks is set.
+     */
+    File _reportDirectory;
+    
+    /**
+     * CPUs to which the child JVMs of the current driver are pinned if
+     * japex.parallelDrivers is set, or null otherwise.
+     */
+    String _cpuSet;
+    
     private PrintWriter outputWriter = new PrintWriter(System.out);
     
     private Map<String, ClassLoader> _namedClassPaths;
@@ -145,11 +288,121 @@ public class Engine {
     	return outputWriter;
     }
     
+    /**
+     * Restrict execution to a single driver, as done in child JVMs 
+     * when japex.forks is set. See {@link JapexFork}.
+     */
+    void setForkedDriver(String driverName) {
+        _forkedDriver = driverName;
+    }
+    
+    void setForkedTestCase(String testCaseName) {
+        _forkedTestCase = testCaseName;
+    }
+    
+    /**
+     * Use the harness overhead measured by the parent JVM rather than 
+     * measuring it again in a child JVM.
+     */
+    void setCalibration(long timerResolution, double timerLatency, 
+        double loopOverhead) 
+    {
+        _timerResolution = timerResolution;
+        _timerLatency = timerLatency;
+        _loopOverhead = loopOverhead;
+        _calibrated = true;
+    }
+    
+    /**
+     * Distribute the execution of the test suite across the workers that
+     * connect to the given port, or to any free port if 0. See 
+     * {@link JapexCoordinator}.
+     */
+    public void setCoordinatorPort(int port) {
+        _coordinatorPort = port;
+    }
+    
+    /**
+     * Listen for workers on the given address, e.g. 0.0.0.0 for all 
+     * interfaces, rather than only on the loopback interface.
+     */
+    public void setCoordinatorAddress(String address) {
+        _coordinatorAddress = address;
+    }
+    
+    public void addEngineListener(EngineListener listener) {
+        _listeners.add(listener);
+    }
+    
+    public void removeEngineListener(EngineListener listener) {
+        _listeners.remove(listener);
+    }
+    
+    /**
+     * Resume a test suite whose results were streamed into a report 
+     * directory, see japex.resultStream. Test cases found in the stream
+     * are not executed again, and new results and reports are written 
+     * into the same directory.
+     */
+    public void resume(File reportDirectory) {
+        File file = new File(reportDirectory, RESULT_STREAM_FILE);
+        if (!file.isFile()) {
+            throw new JapexException("Unable to resume: '" + file 
+                + "' does not exist");
+        }
+        try {
+            _resumedResults = ResultStreamListener.read(file);
+        }
+        catch (IOException e) {
+            throw new JapexException(e);
+        }
+        _reportDirectory = reportDirectory;
+    }
+    
+    public void setReportDirectory(File reportDirectory) {
+        _reportDirectory = reportDirectory;
+    }
+    
+    /**
+     * Returns the directory in which reports are generated. Unless set,
+     * it is a directory under japex.reportsDirectory named after the
+     * time Japex was started, see {@link Japex#getReportDirectory}.
+     */
+    public File getReportDirectory() {
+        if (_reportDirectory == null) {
+            _reportDirectory = Japex.getReportDirectory(
+                new File(_testSuite.getParam(REPORTS_DIRECTORY)));
+        }
+        return _reportDirectory;
+    }
+    
     public TestSuiteImpl start(List<String> configFiles) {
+        ResultStreamListener resultStream = null;
         try { 
             // Load config file
             ConfigFileLoader cfl = new ConfigFileMerger(configFiles);
             _testSuite = cfl.getTestSuite();
+            _configFiles = configFiles;
+            
+            // Expand drivers with japex.threadSweep, also in child JVMs
+            expandThreadSweeps();
+            
+            // Only keep the driver to execute if running in a child JVM
+            if (_forkedDriver != null) {
+                Iterator<DriverImpl> it = _testSuite.getDriverInfoList().iterator();
+                while (it.hasNext()) {
+                    if (!it.next().getName().equals(_forkedDriver)) {
+                        it.remove();
+                    }
+                }
+                if (_testSuite.getDriverInfoList().size() == 0) {
+                    throw new JapexException("Unable to find driver '" 
+                        + _forkedDriver + "' in child JVM");
+                }
+                if (_forkedTestCase != null) {
+                    _testSuite.getDriverInfoList().get(0).retainTestCase(_forkedTestCase);
+                }
+            }
             
             // Ensure result of merge is well formed
             List<DriverImpl> driverList = _testSuite.getDriverInfoList();
@@ -162,13 +415,18 @@ public class Engine {
                         "least one driver and at least one test case");
             }
             
-            if (Japex.test) {
+            if (Japex.test && _forkedDriver == null) {
                 outputWriter.println("Running in test mode without generating reports ...");
             }
+            
+            if (_resumedResults != null) {
+                outputWriter.println("Resuming " + _reportDirectory + " with " 
+                    + _resumedResults.size() + " completed test case(s) ...");
+            }
 
             // Print estimated running time
             if (_testSuite.hasParam(WARMUP_TIME) && 
-                    _testSuite.hasParam(RUN_TIME)) 
+                    _testSuite.hasParam(RUN_TIME) && _forkedDriver == null) 
             {
                 int[] hms = estimateRunningTime(_testSuite);
                 outputWriter.println("Estimated warmup time + run time is " +
@@ -177,11 +435,58 @@ public class Engine {
                     (hms[2] > 0 ? (hms[2] + " seconds ") : ""));                    
             }
 
-            forEachDriver();                  
+            calibrate();
+            
+            // Expose progress through JMX while running
+            try {
+                _monitor.start(_testSuite, 
+                    _testSuite.hasParam(WARMUP_TIME) && _testSuite.hasParam(RUN_TIME) ?
+                        estimateRunningSeconds(_testSuite) : -1L);
+            }
+            catch (JMException e) {
+                outputWriter.println("Warning: Unable to register MBean " 
+                    + EngineMonitor.OBJECT_NAME + ": " + e.getMessage());
+            }
+            
+            // Stream results into the report directory as they are measured
+            if (!Japex.test && _forkedDriver == null && 
+                    _testSuite.getBooleanParam(RESULT_STREAM)) 
+            {
+                resultStream = new ResultStreamListener(
+                    new File(getReportDirectory(), RESULT_STREAM_FILE));
+                addEngineListener(resultStream);
+            }
+            
+            for (EngineListener listener : _listeners) {
+                listener.suiteStarted(_testSuite);
+            }
+            
+            // Distribute drivers across workers if a coordinator port is set, 
+            // or execute several drivers at once if japex.parallelDrivers is set
+            if (_forkedDriver == null && _coordinatorPort >= 0) {
+                forEachDriverDistributed();
+            }
+            else if (_forkedDriver == null && _testSuite.getIntParam(PARALLEL_DRIVERS) > 1) {
+                forEachDriverInParallel();
+            }
+            else {
+                forEachDriver();
+            }
+            
+            for (EngineListener listener : _listeners) {
+                listener.suiteCompleted(_testSuite);
+            }
         }
         catch (Exception e) {
             throw new JapexException(e);
         }
+        finally {
+            _monitor.stop();
+            if (resultStream != null) {
+                resultStream.close();
+                removeEngineListener(resultStream);
+            }
+        }
 
         return _testSuite;
     }        
@@ -204,6 +509,51 @@ public class Engine {
     	}
 }
 
+    /**
+     * Measure the resolution and latency of <code>System.nanoTime()</code>
+     * and the per-iteration overhead of the harness. Results are recorded as 
+     * global params, and used to correct result values of drivers for which 
+     * japex.subtractOverhead is set. Child JVMs use the values measured by 
+     * the parent, see {@link #setCalibration}.
+     */
+    private void calibrate() {
+        if (!_calibrated) {
+            // Resolution is the smallest non-zero difference observed
+            _timerResolution = Long.MAX_VALUE;
+            for (int i = 0; i < CALIBRATION_TIMER_SAMPLES; i++) {
+                long t0 = System.nanoTime(), t1;
+                do {
+                    t1 = System.nanoTime();
+                } while (t1 == t0);
+                _timerResolution = Math.min(_timerResolution, t1 - t0);
+            }
+            
+            // Latency is the average cost of a call, measured after a warmup
+            for (int k = 0; k < 2; k++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < CALIBRATION_TIMER_CALLS; i++) {
+                    _calibrationSink += System.nanoTime();
+                }
+                _timerLatency = (double) (System.nanoTime() - start) / 
+                    CALIBRATION_TIMER_CALLS;
+            }
+            
+            // Loop overhead is the average cost of an iteration of an empty driver
+            _loopOverhead = CalibrationDriver.measureLoopOverhead(CALIBRATION_ITERATIONS);
+            _calibrated = true;
+        }
+        
+        if (_forkedDriver == null) {
+            outputWriter.println("Timer resolution is " + _timerResolution + " ns, latency is " 
+                + Util.formatDouble(_timerLatency) + " ns and loop overhead is " 
+                + Util.formatDouble(_loopOverhead) + " ns");
+        }
+        
+        _testSuite.setLongParam(TIMER_RESOLUTION_NS, _timerResolution);
+        _testSuite.setDoubleParam(TIMER_LATENCY_NS, _timerLatency);
+        _testSuite.setDoubleParam(LOOP_OVERHEAD_NS, _loopOverhead);
+    }
+    
     private void forEachDriver() {
         try {
             List<DriverImpl> driverList = _testSuite.getDriverInfoList();
@@ -218,12 +568,29 @@ public class Engine {
             // Iterate through each driver in final list
             for (int k = 0; k < driverList.size(); k++) {
                 _driverImpl = driverList.get(k);
+                _monitor.setDriver(_driverImpl.getName());
+                for (EngineListener listener : _listeners) {
+                    listener.driverStarted(_driverImpl);
+                }
 
                 int nOfCpus = _driverImpl.getIntParam(NUMBER_OF_CPUS);
                 int nOfThreads = _driverImpl.getIntParam(NUMBER_OF_THREADS);
                 int runsPerDriver = _driverImpl.getIntParam(RUNS_PER_DRIVER);
                 int warmupsPerDriver = _driverImpl.getIntParam(WARMUPS_PER_DRIVER);
                 
+                // Execute driver in child JVMs if japex.forks is set
+                if (_forkedDriver == null && _driverImpl.hasParam(FORKS) 
+                        && _driverImpl.getIntParam(FORKS) > 0) 
+                {
+                    if (!resumeForks()) {
+                        forEachFork();
+                    }
+                    for (EngineListener listener : _listeners) {
+                        listener.driverCompleted(_driverImpl);
+                    }
+                    continue;
+                }
+                
                 if (contextClassLoader) {
                 	effectiveClassLoader = Thread.currentThread().getContextClassLoader();
                 } else {
@@ -252,22 +619,26 @@ public class Engine {
                 	}
                 }
  
-                outputWriter.print("  " + _driverImpl.getName() + " using " 
-                    + nOfThreads + " thread(s) on " + nOfCpus + " cpu(s)");
+                if (_forkedDriver == null) {
+                    outputWriter.print("  " + _driverImpl.getName() + " using " 
+                        + nOfThreads + " thread(s) on " + nOfCpus + " cpu(s)");
+                }
+                
+                _classLoader = effectiveClassLoader;
+                _virtualThreads = _driverImpl.hasParam(THREAD_MODE) &&
+                    _driverImpl.getParam(THREAD_MODE).equalsIgnoreCase("virtual");
+                checkHistogramFootprint(nOfThreads);
                 
-                // Allocate a matrix of nOfThreads * actualRuns size and initialize each instance
+                // Allocate a matrix of nOfThreads * maxRuns size and initialize each instance,
+                // only those of the first run are initialized now if using virtual threads
+                // and those of runs beyond actualRuns only when needed
                 int actualRuns = warmupsPerDriver + runsPerDriver;
+                int maxRuns = warmupsPerDriver + getMaxRunsPerDriver();
                 try {
-                    _drivers = new JapexDriverBase[nOfThreads][actualRuns];
-                    for (int i = 0; i < nOfThreads; i++) {
-                        for (int j = 0; j < actualRuns; j++) {
-                        	String driverClassName = _driverImpl.getParam(DRIVER_CLASS);
-                        	_drivers[i][j] = getJapexDriver(effectiveClassLoader, driverClassName); // returns fresh copy.
-
-                            _drivers[i][j].setDriver(_driverImpl);
-                            _drivers[i][j].setTestSuite(_testSuite);
-                            _drivers[i][j].initializeDriver();
-                        }
+                    _drivers = new JapexDriverBase[nOfThreads][maxRuns];
+                    _threadResults = new ThreadResults(nOfThreads);
+                    for (int j = 0; j < (_virtualThreads ? 1 : actualRuns); j++) {
+                        initializeDrivers(j);
                     }
                 }
                 catch (Throwable e) {
@@ -280,25 +651,38 @@ public class Engine {
                     k--; 
                     
                     // Increment Japex exit code as a counter for errors
-                    Japex.exitCode++;
+                    Japex.incrementExitCode();
                     
                     continue;                    
                 }
                 
 		// Created thread pool of nOfThreads size and pre-start threads                
-		if (nOfThreads > 1) {
+		if (nOfThreads > 1 || _virtualThreads) {
 		    _threadPool = new ThreadPoolExecutor(nOfThreads, nOfThreads, 0L,
 			TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
-			new JapexThreadFactory(effectiveClassLoader));      // Use Japex thread factory
+			new JapexThreadFactory(effectiveClassLoader, _virtualThreads));      // Use Japex thread factory
 		    _threadPool.prestartAllCoreThreads();
 		}
 
                 // Reset memory usage before starting runs
                 resetPeakMemoryUsage();
+                
+                // Record all runs of the driver if japex.jfrScope is 'driver'
+                JfrRecorder jfrRecorder = isJfrScope(_driverImpl, "driver") ?
+                    startJfrRecording(_driverImpl) : null;
                         
                 // Display driver's name
+                _profiles.clear();
                 forEachRun();
                 
+                // Write a flame graph of each test case if japex.profile is set
+                writeFlameGraphs();
+                
+                if (jfrRecorder != null) {
+                    stopJfrRecording(jfrRecorder, _driverImpl, 
+                        Util.toFileName(_driverImpl.getName()) + ".jfr");
+                }
+                
                 // Set memory usage param and display info
                 if (_driverImpl.getBooleanParam(REPORT_PEAK_HEAP_USAGE)) {
                     setPeakMemoryUsage(_driverImpl);
@@ -307,19 +691,27 @@ public class Engine {
                         + " KB");
                 }
                 
+                for (EngineListener listener : _listeners) {
+                    listener.driverCompleted(_driverImpl);
+                }
+                
                 // Call terminate on all driver instances
-                for (int i = 0; i < nOfThreads; i++) {
-                    for (int j = 0; j < actualRuns; j++) {
-                        _drivers[i][j].terminateDriver();
-                    }
+                for (int j = 0; j < maxRuns; j++) {
+                    terminateDrivers(j);
                 }                
                 
                 // Shutdown thread pool
-                if (nOfThreads > 1) {
+                if (nOfThreads > 1 || _virtualThreads) {
 		    _threadPool.shutdown();
                 }                
             }   
 
+            // Compare results across the thread counts of each sweep
+            setScalabilityParams();
+            
+            // Compare results of each test against the normal driver
+            setResultRatioParams();
+            
             // If number drives is zero, abort as no drivers were loaded
             if (_testSuite.getDriverInfoList().size() == 0) {
                 LOG.error("Error: Unable to load any of the " +
@@ -333,52 +725,718 @@ public class Engine {
         }
     }
     
-    private void forEachRun() {
+    /**
+     * Execute up to japex.parallelDrivers drivers at once, each one in
+     * child JVMs as if japex.forks was set. The available CPUs are split
+     * into one disjoint set per parallel driver, and child JVMs are pinned
+     * to the set of their driver using <code>taskset</code> if supported.
+     * The output of each driver is printed once the driver completes.
+     */
+    private void forEachDriverInParallel() throws Exception {
+        List<DriverImpl> driverList = _testSuite.getDriverInfoList();
+        
+        final int nOfCpus = Runtime.getRuntime().availableProcessors();
+        int parallelDrivers = Math.min(driverList.size(), 
+            _testSuite.getIntParam(PARALLEL_DRIVERS));
+        if (parallelDrivers > nOfCpus) {
+            outputWriter.println("  Warning: Only " + nOfCpus + " cpu(s) available to " 
+                + "execute " + parallelDrivers + " drivers in parallel");
+            parallelDrivers = nOfCpus;
+        }
+        final int nOfSlots = parallelDrivers;
+        
+        final boolean cpuPinning = JapexFork.isCpuPinningSupported();
+        if (!cpuPinning) {
+            outputWriter.println("  Warning: Unable to find 'taskset', drivers "
+                + "executed in parallel will not be pinned to cpus");
+        }
+        outputWriter.println("  Executing " + nOfSlots + " drivers in parallel ...");
+        outputWriter.flush();
+        
+        // Slot i owns cpus [i * nOfCpus / nOfSlots, (i + 1) * nOfCpus / nOfSlots)
+        final BlockingQueue<Integer> freeSlots = new ArrayBlockingQueue<Integer>(nOfSlots);
+        for (int i = 0; i < nOfSlots; i++) {
+            freeSlots.add(i);
+        }
+        
+        // Resolve the report directory before it is shared by all drivers
+        getReportDirectory();
+        
+        ExecutorService executor = Executors.newFixedThreadPool(nOfSlots);
+        List<Future<Object>> futures = new ArrayList<Future<Object>>();
+        for (final DriverImpl driverImpl : driverList) {
+            futures.add(executor.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    int slot = freeSlots.take();
+                    try {
+                        int firstCpu = slot * nOfCpus / nOfSlots;
+                        int lastCpu = (slot + 1) * nOfCpus / nOfSlots - 1;
+                        
+                        StringWriter buffer = new StringWriter();
+                        Engine engine = newDriverEngine(driverImpl, 
+                            new PrintWriter(buffer), 
+                            cpuPinning ? (firstCpu + "-" + lastCpu) : null);
+                        try {
+                            engine.forEachForkOfDriver(lastCpu - firstCpu + 1);
+                        }
+                        finally {
+                            _monitor.removeView(engine._monitor);
+                        }
+                        
+                        synchronized (outputWriter) {
+                            outputWriter.print(buffer.toString());
+                            outputWriter.flush();
+                        }
+                    }
+                    finally {
+                        freeSlots.add(slot);
+                    }
+                    return null;
+                }
+            }));
+        }
+        executor.shutdown();
+        
         try {
-            int runsPerDriver = _driverImpl.getIntParam(RUNS_PER_DRIVER);
-            int warmupsPerDriver = _driverImpl.getIntParam(WARMUPS_PER_DRIVER);
-
-            int actualRuns = warmupsPerDriver + runsPerDriver;
-            for (_driverRun = 0; _driverRun < actualRuns; _driverRun++) {
-                if (_driverRun < warmupsPerDriver) {
-                    outputWriter.print("\n    Warmup " + (_driverRun + 1) + ": ");
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+        }
+        catch (ExecutionException e) {
+            executor.shutdownNow();
+            throw new JapexException(e.getCause());
+        }
+        
+        // Compare results across the thread counts of each sweep
+        setScalabilityParams();
+        
+        // Compare results of each test against the normal driver
+        setResultRatioParams();
+    }
+    
+    /**
+     * Execute each fork of each test case of every driver as a separate 
+     * work unit on the workers connected to a coordinator. Results are
+     * merged into the drivers as with japex.forks, and the output of each
+     * unit is printed once it completes.
+     */
+    private void forEachDriverDistributed() throws Exception {
+        String token = JapexCoordinator.getToken();
+        JapexCoordinator coordinator = new JapexCoordinator(_coordinatorAddress, 
+            _coordinatorPort, token, outputWriter);
+        try {
+            List<JapexCoordinator.WorkUnit> units = 
+                new ArrayList<JapexCoordinator.WorkUnit>();
+            for (DriverImpl driverImpl : _testSuite.getDriverInfoList()) {
+                _driverImpl = driverImpl;
+                checkForkSupported("the test suite is distributed");
+                for (EngineListener listener : _listeners) {
+                    listener.driverStarted(_driverImpl);
                 }
-                else {
-                    outputWriter.print("\n    Run " + (_driverRun - warmupsPerDriver + 1) + ": ");                        
+                if (resumeForks()) {
+                    continue;
                 }
                 
-                if (Japex.resultPerLine) {
-                    outputWriter.println("");
+                for (int f = 0; f < getForks(); f++) {
+                    int[] runIndices = getForkRuns(f);
+                    for (TestCaseImpl tc : _driverImpl.getTestCases(0)) {
+                        units.add(newWorkUnit(_driverImpl, tc.getName(), f, runIndices));
+                    }
+                }
+            }
+            
+            outputWriter.println("  Waiting for workers on port " 
+                + coordinator.getPort() + " to execute " + units.size() 
+                + " unit(s) ...");
+            if (!token.equals(System.getenv(JapexCoordinator.TOKEN_VARIABLE))) {
+                outputWriter.println("  Workers must set " 
+                    + JapexCoordinator.TOKEN_VARIABLE + "=" + token);
+            }
+            outputWriter.flush();
+            coordinator.execute(units);
+        }
+        finally {
+            coordinator.close();
+        }
+        
+        for (DriverImpl driverImpl : _testSuite.getDriverInfoList()) {
+            _driverImpl = driverImpl;
+            outputWriter.print("  " + _driverImpl.getName() + ":");
+            printAverages();
+            for (EngineListener listener : _listeners) {
+                listener.driverCompleted(_driverImpl);
+            }
+        }
+        
+        // Compare results across the thread counts of each sweep
+        setScalabilityParams();
+        
+        // Compare results of each test against the normal driver
+        setResultRatioParams();
+    }
+    
+    /**
+     * Create a work unit executing a fork of a test case of a driver,
+     * which prints its output and notifies listeners once completed.
+     */
+    private JapexCoordinator.WorkUnit newWorkUnit(final DriverImpl driverImpl, 
+        final String testCase, final int fork, int[] runIndices) 
+    {
+        final StringWriter buffer = new StringWriter();
+        JapexFork jf = new JapexFork(driverImpl, _configFiles, new PrintWriter(buffer));
+        jf.setReportDirectory(getReportDirectory());
+        jf.setTestCase(testCase);
+        if (_calibrated) {
+            jf.setCalibration(_timerResolution, _timerLatency, _loopOverhead);
+        }
+        
+        return new JapexCoordinator.WorkUnit(jf, runIndices) {
+            void completed(String workerName, int exitCode) {
+                synchronized (outputWriter) {
+                    outputWriter.print("  " + driverImpl.getName() + ", " + testCase 
+                        + ", fork " + (fork + 1) + " on " + workerName + ":");
+                    outputWriter.print(buffer.toString());
+                    if (exitCode != 0) {
+                        outputWriter.println("\n  Warning: " + testCase + " of driver '" 
+                            + driverImpl.getName() + "' failed with exit code " + exitCode);
+                        
+                        // Increment Japex exit code as a counter for errors
+                        Japex.incrementExitCode();
+                    }
+                    outputWriter.flush();
                 }
                 
-                // geometric mean = (sum{i,n} x_i) / n
-                _geomMeanresult = 1.0;
-                // arithmetic mean = (prod{i,n} x_i)^(1/n)
-                _aritMeanresult = 0.0;
-                // harmonic mean inverse = sum{i,n} 1/(n * x_i)
-                _harmMeanresultInverse = 0.0;
-
-                forEachTestCase();
-
-                if (Japex.resultPerLine) {
-                    outputWriter.print(
-                            "      aritmean," + Util.formatDouble(_aritMeanresult) +
-                            ",\n      geommean," + Util.formatDouble(_geomMeanresult) +
-                            ",\n      harmmean," + Util.formatDouble(1.0 / _harmMeanresultInverse));
-                } else {
-                    outputWriter.print(
-                            "aritmean," + Util.formatDouble(_aritMeanresult) +
-                            ",geommean," + Util.formatDouble(_geomMeanresult) +
-                            ",harmmean," + Util.formatDouble(1.0 / _harmMeanresultInverse));
+                _monitor.completeTestCases(_runIndices.length);
+                synchronized (_listeners) {
+                    for (int r = 0; r < _runIndices.length; r++) {
+                        if (_runIndices[r] < 0) {
+                            continue;
+                        }
+                        for (TestCaseImpl tc : driverImpl.getTestCases(_runIndices[r])) {
+                            if (tc.getName().equals(testCase)) {
+                                for (EngineListener listener : _listeners) {
+                                    listener.testCaseCompleted(driverImpl, _runIndices[r], tc);
+                                }
+                            }
+                        }
+                    }
                 }
             }
-
-            int startRun = warmupsPerDriver;
-            if (actualRuns - startRun > 1) {
-                // Print average for all runs
-                outputWriter.print("\n     Avgs: ");
-                Iterator<TestCaseImpl> tci = _driverImpl.getAggregateTestCases().iterator();
-                while (tci.hasNext()) {
+        };
+    }
+    
+    /**
+     * Create an engine that executes a single driver of this engine's
+     * test suite in child JVMs, sharing its listeners and reporting its
+     * progress in its own view of this engine's monitor.
+     */
+    private Engine newDriverEngine(DriverImpl driverImpl, 
+        PrintWriter outputWriter, String cpuSet) 
+    {
+        Engine engine = new Engine();
+        engine._testSuite = _testSuite;
+        engine._configFiles = _configFiles;
+        engine._reportDirectory = _reportDirectory;
+        engine._monitor = _monitor.newView();
+        engine._listeners = _listeners;
+        engine._resumedResults = _resumedResults;
+        engine._driverImpl = driverImpl;
+        engine._cpuSet = cpuSet;
+        engine._timerResolution = _timerResolution;
+        engine._timerLatency = _timerLatency;
+        engine._loopOverhead = _loopOverhead;
+        engine._calibrated = _calibrated;
+        engine.outputWriter = outputWriter;
+        return engine;
+    }
+    
+    /**
+     * Execute the current driver in child JVMs, on behalf of the engine
+     * executing drivers in parallel. 
+     */
+    /**
+     * Warn if the latency histograms of all the threads of the current 
+     * driver, one per thread or two in open-loop mode, would take more 
+     * than HISTOGRAM_HEAP_FRACTION of the maximum heap, as is likely with 
+     * thousands of virtual threads.
+     */
+    private void checkHistogramFootprint(int nOfThreads) {
+        int histograms = 0;
+        for (TestCaseImpl tc : _driverImpl.getTestCases(0)) {
+            if (tc.hasParam(TARGET_RATE)) {
+                histograms = 2;
+            }
+            else if (tc.hasParam(LATENCY_HISTOGRAM) && tc.getBooleanParam(LATENCY_HISTOGRAM)) {
+                histograms = Math.max(histograms, 1);
+            }
+        }
+        
+        long footprint = (long) nOfThreads * histograms * LatencyHistogram.getFootprint();
+        if (footprint > HISTOGRAM_HEAP_FRACTION * Runtime.getRuntime().maxMemory()) {
+            outputWriter.println("\n  Warning: Latency histograms of driver '" 
+                + _driverImpl.getName() + "' take about " + footprint / (1024 * 1024) 
+                + " MB with " + nOfThreads + " thread(s), consider fewer threads"
+                + " or increasing the maximum heap size");
+        }
+    }
+    
+    private void forEachForkOfDriver(int nOfCpus) {
+        _monitor.setDriver(_driverImpl.getName());
+        synchronized (_listeners) {
+            for (EngineListener listener : _listeners) {
+                listener.driverStarted(_driverImpl);
+            }
+        }
+        
+        int nOfThreads = _driverImpl.getIntParam(NUMBER_OF_THREADS);
+        if (_cpuSet != null && nOfThreads > nOfCpus) {
+            outputWriter.println("  Warning: Driver '" + _driverImpl.getName() 
+                + "' uses " + nOfThreads + " thread(s) on only " + nOfCpus + " cpu(s)");
+        }
+        
+        if (!resumeForks()) {
+            forEachFork();
+        }
+        
+        synchronized (_listeners) {
+            for (EngineListener listener : _listeners) {
+                listener.driverCompleted(_driverImpl);
+            }
+        }
+    }
+    
+    /**
+     * Replace every driver that defines japex.threadSweep by a copy for
+     * each thread count in the sweep, named after the driver and the 
+     * thread count. Only the copy with the fewest threads is the normal
+     * driver, if the original was.
+     */
+    private void expandThreadSweeps() {
+        List<DriverImpl> driverList = _testSuite.getDriverInfoList();
+        for (int k = 0; k < driverList.size(); k++) {
+            DriverImpl driver = driverList.get(k);
+            if (!driver.hasParam(THREAD_SWEEP)) {
+                continue;
+            }
+            
+            int[] threads = Util.parseThreadSweep(driver.getParam(THREAD_SWEEP));
+            driverList.remove(k);
+            for (int i = 0; i < threads.length; i++) {
+                DriverImpl copy = driver.copy(driver.getName() + "@" + threads[i]);
+                copy.setIntParam(NUMBER_OF_THREADS, threads[i]);
+                copy.setParam(THREAD_SWEEP_DRIVER, driver.getName());
+                copy.setNormal(driver.isNormal() && i == 0);
+                driverList.add(k + i, copy);
+            }
+            k += threads.length - 1;
+        }
+    }
+    
+    /**
+     * For each thread sweep, set the speedup and parallel efficiency of
+     * every thread count relative to the smallest one measured, making 
+     * no assumption about how throughput scales below that count. If the
+     * sweep includes a single thread, speedups are relative to one thread
+     * and the coefficients of the Universal Scalability Law are fitted to
+     * them. The throughput is the arithmetic mean of the results, or its
+     * inverse if japex.resultUnit is 'ms'.
+     */
+    private void setScalabilityParams() {
+        // Group drivers by sweep, keeping the order of thread counts
+        Map<String, List<DriverImpl>> sweeps = 
+            new LinkedHashMap<String, List<DriverImpl>>();
+        for (DriverImpl driver : _testSuite.getDriverInfoList()) {
+            if (driver.hasParam(THREAD_SWEEP_DRIVER)) {
+                String name = driver.getParam(THREAD_SWEEP_DRIVER);
+                if (!sweeps.containsKey(name)) {
+                    sweeps.put(name, new ArrayList<DriverImpl>());
+                }
+                sweeps.get(name).add(driver);
+            }
+        }
+        
+        boolean latency = _testSuite.getParam(RESULT_UNIT).equalsIgnoreCase("ms");
+        for (List<DriverImpl> sweep : sweeps.values()) {
+            if (sweep.size() < 2) {
+                continue;
+            }
+            
+            int[] threads = new int[sweep.size()];
+            double[] speedups = new double[sweep.size()];
+            double baseThroughput = 0.0;
+            for (int i = 0; i < sweep.size(); i++) {
+                DriverImpl driver = sweep.get(i);
+                driver.getAggregateTestCases();     // computes means
+                double result = driver.getDoubleParam(RESULT_ARIT_MEAN);
+                double throughput = latency ? 1.0 / result : result;
+                
+                threads[i] = driver.getIntParam(NUMBER_OF_THREADS);
+                if (i == 0) {
+                    baseThroughput = throughput;
+                }
+                speedups[i] = throughput / baseThroughput;
+                driver.setDoubleParam(SPEEDUP, speedups[i]);
+                driver.setDoubleParam(PARALLEL_EFFICIENCY, 
+                    speedups[i] * threads[0] / threads[i]);
+            }
+            
+            // The USL models the speedup relative to a single thread
+            if (threads[0] != 1) {
+                continue;
+            }
+            double[] usl = Util.fitUniversalScalability(threads, speedups);
+            for (DriverImpl driver : sweep) {
+                driver.setDoubleParam(USL_SIGMA, usl[0]);
+                driver.setDoubleParam(USL_KAPPA, usl[1]);
+                if (usl[1] > 0.0 && usl[0] < 1.0) {
+                    driver.setDoubleParam(USL_PEAK_THREADS, 
+                        Math.sqrt((1.0 - usl[0]) / usl[1]));
+                }
+            }
+        }
+    }
+    
+    /**
+     * If a driver is marked as normal, set the ratio of the mean result of
+     * every other driver to that of the normal driver for each test, as 
+     * shown in normalized charts, together with a bootstrap confidence 
+     * interval of the ratio at japex.confidenceLevel.
+     */
+    private void setResultRatioParams() {
+        DriverImpl normalDriver = null;
+        for (DriverImpl driver : _testSuite.getDriverInfoList()) {
+            if (driver.isNormal()) {
+                normalDriver = driver;
+                break;
+            }
+        }
+        if (normalDriver == null) {
+            return;
+        }
+        
+        List<TestCaseImpl> normalTestCases = normalDriver.getAggregateTestCases();
+        for (DriverImpl driver : _testSuite.getDriverInfoList()) {
+            if (driver == normalDriver) {
+                continue;
+            }
+            List<TestCaseImpl> testCases = driver.getAggregateTestCases();
+            for (int n = 0; n < testCases.size(); n++) {
+                TestCaseImpl tc = testCases.get(n);
+                tc.setDoubleParam(RESULT_RATIO, tc.getDoubleParam(RESULT_VALUE) / 
+                    normalTestCases.get(n).getDoubleParam(RESULT_VALUE));
+                
+                double[] results = driver.getMeasuredResults(n);
+                double[] normalResults = normalDriver.getMeasuredResults(n);
+                if (results.length > 1 && normalResults.length > 1) {
+                    double[] interval = Util.bootstrapRatioConfidenceInterval(
+                        results, normalResults, driver.getConfidenceLevel(), 
+                        DriverImpl.BOOTSTRAP_RESAMPLES, 
+                        new Random(DriverImpl.BOOTSTRAP_SEED));
+                    tc.setDoubleParam(RESULT_RATIO_CI_LOW, interval[0]);
+                    tc.setDoubleParam(RESULT_RATIO_CI_HIGH, interval[1]);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Execute the current driver in japex.forks child JVMs, one after 
+     * the other. All runs of the first fork are merged into the driver's
+     * runs; for other forks, warmup runs are discarded and measured runs 
+     * are added to the driver.
+     */
+    private void forEachFork() {
+        int nOfCpus = _driverImpl.getIntParam(NUMBER_OF_CPUS);
+        int nOfThreads = _driverImpl.getIntParam(NUMBER_OF_THREADS);
+        int forks = getForks();
+        
+        checkForkSupported("'japex.forks' is set");
+        
+        outputWriter.print("  " + _driverImpl.getName() + " using " 
+            + nOfThreads + " thread(s) on " + nOfCpus + " cpu(s) in " 
+            + forks + " fork(s)" + (_cpuSet != null ? (" pinned to cpus " + _cpuSet) : ""));
+        
+        JapexFork fork = new JapexFork(_driverImpl, _configFiles, outputWriter);
+        fork.setReportDirectory(getReportDirectory());
+        fork.setCpuSet(_cpuSet);
+        if (_calibrated) {
+            fork.setCalibration(_timerResolution, _timerLatency, _loopOverhead);
+        }
+        for (int f = 0; f < forks; f++) {
+            int[] runIndices = getForkRuns(f);
+            
+            outputWriter.print("\n    Fork " + (f + 1) + ":");
+            outputWriter.flush();
+            
+            int exitCode;
+            try {
+                exitCode = fork.run(runIndices);
+            }
+            catch (Exception e) {
+                if (!Japex.silent) {
+                    e.printStackTrace();
+                }
+                exitCode = -1;
+            }
+            _monitor.completeTestCases(
+                runIndices.length * _driverImpl.getTestCases(0).size());
+            synchronized (_listeners) {
+                for (int r = 0; r < runIndices.length; r++) {
+                    if (runIndices[r] >= 0) {
+                        for (TestCaseImpl tc : _driverImpl.getTestCases(runIndices[r])) {
+                            for (EngineListener listener : _listeners) {
+                                listener.testCaseCompleted(_driverImpl, runIndices[r], tc);
+                            }
+                        }
+                    }
+                }
+            }
+            
+            if (exitCode != 0) {
+                outputWriter.println("\n  Warning: Fork " + (f + 1) + " of driver '" 
+                    + _driverImpl.getName() + "' failed with exit code " + exitCode);
+                
+                // Increment Japex exit code as a counter for errors
+                Japex.incrementExitCode();
+            }
+        }
+        
+        // Each fork prints its own averages, print those of all forks
+        if (forks > 1) {
+            outputWriter.print("    All forks:");
+            printAverages();
+        }
+    }
+    
+    /**
+     * Returns the runs of the current driver into which the runs of the 
+     * given fork are merged, or -1 for warmup runs of forks other than 
+     * the first, and sets the output params of their test cases in case 
+     * the fork fails. Runs are added for every fork but the first.
+     */
+    private int[] getForkRuns(int fork) {
+        int runsPerDriver = _driverImpl.getIntParam(RUNS_PER_DRIVER);
+        int warmupsPerDriver = _driverImpl.getIntParam(WARMUPS_PER_DRIVER);
+        
+        int[] runIndices = new int[warmupsPerDriver + runsPerDriver];
+        for (int r = 0; r < runIndices.length; r++) {
+            if (fork == 0) {
+                runIndices[r] = r;
+            }
+            else {
+                runIndices[r] = (r < warmupsPerDriver) ? -1 : _driverImpl.addRun();
+            }
+            
+            // Set output parameters in case the fork fails
+            if (runIndices[r] >= 0) {
+                for (TestCaseImpl tc : _driverImpl.getTestCases(runIndices[r])) {
+                    tc.setDoubleParam(RESULT_VALUE, Double.NaN);
+                    tc.setLongParam(RUN_ITERATIONS_SUM, 0L);
+                    tc.setDoubleParam(ACTUAL_RUN_TIME, Double.NaN);
+                }
+            }
+        }
+        return runIndices;
+    }
+    
+    /**
+     * Check that the current driver can be executed in child JVMs, given
+     * the reason why it is.
+     */
+    private void checkForkSupported(String reason) {
+        if (_driverImpl.hasParam(NAMED_CLASS_PATH)) {
+            throw new JapexException("Parameter 'japex.namedClassPath' is not " 
+                + "supported by driver '" + _driverImpl.getName() 
+                + "' when " + reason);
+        }
+        if (_driverImpl.hasParam(TARGET_RELATIVE_ERROR)) {
+            throw new JapexException("Parameter 'japex.targetRelativeError' is not " 
+                + "supported by driver '" + _driverImpl.getName() 
+                + "' when " + reason);
+        }
+    }
+    
+    /**
+     * Returns the number of child JVMs in which the current driver is
+     * executed, at least one if japex.forks is not set.
+     */
+    private int getForks() {
+        return _driverImpl.hasParam(FORKS) ? 
+            Math.max(1, _driverImpl.getIntParam(FORKS)) : 1;
+    }
+    
+    /**
+     * Allocate and initialize the driver instances used by every thread
+     * in a run of the current driver.
+     */
+    private void initializeDrivers(int run) throws Exception {
+        String driverClassName = _driverImpl.getParam(DRIVER_CLASS);
+        for (int i = 0; i < _drivers.length; i++) {
+            _drivers[i][run] = getJapexDriver(_classLoader, driverClassName); // returns fresh copy.
+            
+            _drivers[i][run].setDriver(_driverImpl);
+            _drivers[i][run].setTestSuite(_testSuite);
+            _drivers[i][run].setThreadResults(_threadResults, i);
+            _drivers[i][run].initializeDriver();
+        }
+    }
+    
+    /**
+     * Terminate the driver instances used in a run, if not already
+     * terminated, and release them.
+     */
+    private void terminateDrivers(int run) {
+        for (int i = 0; i < _drivers.length; i++) {
+            if (_drivers[i][run] != null) {
+                _drivers[i][run].terminateDriver();
+                _drivers[i][run] = null;
+            }
+        }
+    }
+    
+    private void forEachRun() {
+        try {
+            int runsPerDriver = _driverImpl.getIntParam(RUNS_PER_DRIVER);
+            int warmupsPerDriver = _driverImpl.getIntParam(WARMUPS_PER_DRIVER);
+
+            int actualRuns = warmupsPerDriver + runsPerDriver;
+            int maxRuns = warmupsPerDriver + getMaxRunsPerDriver();
+            for (_driverRun = 0; _driverRun < actualRuns || 
+                    _driverRun < maxRuns && !isTargetErrorReached(); _driverRun++) 
+            {
+                _monitor.setRun(_driverRun);
+                
+                // Add a run if the target relative error has not been reached
+                if (_driverRun >= actualRuns) {
+                    _driverImpl.addRun();
+                    _monitor.addTestCases(_driverImpl.getTestCases(_driverRun).size());
+                    if (!_virtualThreads) {
+                        initializeDrivers(_driverRun);
+                    }
+                }
+                
+                if (_driverRun < warmupsPerDriver) {
+                    outputWriter.print("\n    Warmup " + (_driverRun + 1) + ": ");
+                }
+                else {
+                    outputWriter.print("\n    Run " + (_driverRun - warmupsPerDriver + 1) + ": ");                        
+                }
+                
+                if (Japex.resultPerLine) {
+                    outputWriter.println("");
+                }
+                
+                // geometric mean = (sum{i,n} x_i) / n
+                _geomMeanresult = 1.0;
+                // arithmetic mean = (prod{i,n} x_i)^(1/n)
+                _aritMeanresult = 0.0;
+                // harmonic mean inverse = sum{i,n} 1/(n * x_i)
+                _harmMeanresultInverse = 0.0;
+
+                if (_virtualThreads && _driverRun > 0) {
+                    initializeDrivers(_driverRun);
+                }
+                
+                for (EngineListener listener : _listeners) {
+                    listener.runStarted(_driverImpl, _driverRun);
+                }
+                
+                forEachTestCase();
+                
+                if (_virtualThreads) {
+                    terminateDrivers(_driverRun);
+                }
+
+                if (Japex.resultPerLine) {
+                    outputWriter.print(
+                            "      aritmean," + Util.formatDouble(_aritMeanresult) +
+                            ",\n      geommean," + Util.formatDouble(_geomMeanresult) +
+                            ",\n      harmmean," + Util.formatDouble(1.0 / _harmMeanresultInverse));
+                } else {
+                    outputWriter.print(
+                            "aritmean," + Util.formatDouble(_aritMeanresult) +
+                            ",geommean," + Util.formatDouble(_geomMeanresult) +
+                            ",harmmean," + Util.formatDouble(1.0 / _harmMeanresultInverse));
+                }
+                
+                printJitSuspects();
+                
+                for (EngineListener listener : _listeners) {
+                    listener.runCompleted(_driverImpl, _driverRun);
+                }
+            }
+            
+            if (_driverImpl.hasParam(TARGET_RELATIVE_ERROR)) {
+                _driverImpl.setIntParam(ACTUAL_RUNS_PER_DRIVER, 
+                    _driverRun - warmupsPerDriver);
+            }
+
+            printAverages();
+        }
+        catch (Exception e) {
+            throw new JapexException(e);
+        }
+    }
+    
+    /**
+     * Print the names of the test cases in the current run whose result 
+     * is suspect because the JIT was active during the run phase.
+     */
+    private void printJitSuspects() {
+        StringBuffer suspects = new StringBuffer();
+        for (TestCaseImpl tc : _driverImpl.getTestCases(_driverRun)) {
+            if (tc.hasParam(JIT_SUSPECT) && tc.getBooleanParam(JIT_SUSPECT)) {
+                suspects.append(suspects.length() > 0 ? "," : "").append(tc.getName());
+            }
+        }
+        if (suspects.length() > 0) {
+            outputWriter.print("\n      JIT suspect: " + suspects);
+        }
+    }
+    
+    /**
+     * Returns the maximum number of measured runs of the current driver,
+     * which is japex.runsPerDriver unless japex.targetRelativeError is 
+     * set, in which case it is japex.maxRunsPerDriver.
+     */
+    private int getMaxRunsPerDriver() {
+        int runsPerDriver = _driverImpl.getIntParam(RUNS_PER_DRIVER);
+        if (!_driverImpl.hasParam(TARGET_RELATIVE_ERROR)) {
+            return runsPerDriver;
+        }
+        int maxRunsPerDriver = _driverImpl.hasParam(MAX_RUNS_PER_DRIVER) ?
+            _driverImpl.getIntParam(MAX_RUNS_PER_DRIVER) :
+            Integer.parseInt(DEFAULT_MAX_RUNS_PER_DRIVER);
+        return Math.max(runsPerDriver, maxRunsPerDriver);
+    }
+    
+    /**
+     * Returns true if japex.targetRelativeError is not set or if the 
+     * confidence interval of the result of every test case, over the 
+     * measured runs executed so far, is within it.
+     */
+    private boolean isTargetErrorReached() {
+        if (!_driverImpl.hasParam(TARGET_RELATIVE_ERROR)) {
+            return true;
+        }
+        return _driverImpl.getMaxRelativeError() <= 
+            _driverImpl.getDoubleParam(TARGET_RELATIVE_ERROR);
+    }
+    
+    /**
+     * Print the average and standard deviation of the results of every
+     * test case over all the measured runs of the current driver.
+     */
+    private void printAverages() {
+        try {
+            int warmupsPerDriver = _driverImpl.getIntParam(WARMUPS_PER_DRIVER);
+            
+            int startRun = warmupsPerDriver;
+            if (_driverImpl.getNumberOfRuns() - startRun > 1) {
+                // Print average for all runs
+                outputWriter.print("\n     Avgs: ");
+                Iterator<TestCaseImpl> tci = _driverImpl.getAggregateTestCases().iterator();
+                while (tci.hasNext()) {
                     TestCaseImpl tc = (TestCaseImpl) tci.next();
                     outputWriter.print(tc.getName() + ",");                        
                     outputWriter.print(
@@ -422,7 +1480,6 @@ public class Engine {
     
     private void forEachTestCase() {
         try {
-            double endTime;
             int nOfCpus = _driverImpl.getIntParam(NUMBER_OF_CPUS);
             int nOfThreads = _driverImpl.getIntParam(NUMBER_OF_THREADS);
             
@@ -445,138 +1502,10 @@ public class Engine {
                     outputWriter.print(tc.getName() + ",");
                 }
                 
-                Future<?>[] futures = null;
-                List<Long> gCStartTimes = null;
-                
-                try {
-                    // If nOfThreads == 1, re-use this thread
-                    if (nOfThreads == 1) {
-                        // -- Prepare phase --------------------------------------
-                        
-                        _drivers[0][_driverRun].setTestCase(tc);     // tc is shared!
-                        _drivers[0][_driverRun].prepare();
-                        
-                        // -- Warmup phase ---------------------------------------
-                        
-                        endTime = tc.hasParam(WARMUP_TIME) ?
-                            Util.currentTimeMillis() +
-                                Util.parseDuration(tc.getParam(WARMUP_TIME)) : 0L;
-                        
-                        // First time call does warmup
-                        _drivers[0][_driverRun].setEndTime(endTime);
-                        _drivers[0][_driverRun].call();
-                        
-                        // Set actual warmup time using sum if just one thread
-                        tc.setDoubleParam(ACTUAL_WARMUP_TIME,
-                            tc.getDoubleParam(WARMUP_TIME_SUM));
-                        
-                        // -- Run phase -------------------------------------------
-                        
-                        endTime = tc.hasParam(RUN_TIME) ?
-                            Util.currentTimeMillis() +
-                                Util.parseDuration(tc.getParam(RUN_TIME)) : 0L;
- 
-                        // Run GC and reset GC start times
-                        System.gc();                       
-                        gCStartTimes = getGCAbsoluteTimes();
-                        
-                        // Second time call does run
-                        _drivers[0][_driverRun].setEndTime(endTime);
-                        _drivers[0][_driverRun].call();
-                        
-                        // Set actual run time using sum if there's one thread
-                        tc.setDoubleParam(ACTUAL_RUN_TIME,
-                            tc.getDoubleParam(RUN_TIME_SUM));
-                    } 
-                    else {  // nOfThreads > 1
-                        
-                        // -- Prepare phase --------------------------------------
-                        
-                        // Initialize driver instance with test case object do prepare
-                        for (int i = 0; i < nOfThreads; i++) {
-                            _drivers[i][_driverRun].setTestCase(tc);     // tc is shared!
-                            _drivers[i][_driverRun].prepare();
-                        }
-                        
-                        // -- Warmup phase ---------------------------------------
-                        
-                        // Fork all threads -- first time drivers will warmup
-                        futures = new Future<?>[nOfThreads];
-                        
-                        endTime = tc.hasParam(WARMUP_TIME) ?
-                            Util.currentTimeMillis() +
-                                Util.parseDuration(tc.getParam(WARMUP_TIME)) : 0L;
-                        
-                        for (int i = 0; i < nOfThreads; i++) {
-                            _drivers[i][_driverRun].setEndTime(endTime);
-                            futures[i] = _threadPool.submit(_drivers[i][_driverRun]);
-                        }
-                        
-                        // Wait for all threads to finish
-                        for (int i = 0; i < nOfThreads; i++) {
-                            futures[i].get();
-                        }
-                        
-                        // Set actual warmup time using average over threads
-                        tc.setDoubleParam(ACTUAL_WARMUP_TIME,
-                            tc.getDoubleParam(WARMUP_TIME_SUM) / nOfThreads);
-                        
-                        // -- Run phase -------------------------------------------
-                        
-                        endTime = tc.hasParam(RUN_TIME) ?
-                            Util.currentTimeMillis() +
-                                Util.parseDuration(tc.getParam(RUN_TIME)) : 0L;
-                        
-                        // Run GC and reset GC start times
-                        System.gc();                       
-                        gCStartTimes = getGCAbsoluteTimes();
-                        
-                        // Fork all threads -- second time drivers will run
-                        for (int i = 0; i < nOfThreads; i++) {
-                            _drivers[i][_driverRun].setEndTime(endTime);
-                            futures[i] = _threadPool.submit(_drivers[i][_driverRun]);
-                        }
-                        
-                        // Wait for all threads to finish
-                        for (int i = 0; i < nOfThreads; i++) {
-                            futures[i].get();
-                        }
-                        
-                        // Set actual run time using average over threads
-                        tc.setDoubleParam(ACTUAL_RUN_TIME,
-                            tc.getDoubleParam(RUN_TIME_SUM) / nOfThreads);                        
-                    }
-                    
-                    // Get the total time take for GC over the measurement period
-                    _gCTime = getGCRelativeTotalTime(gCStartTimes);
-                    
-                    // Finish phase
-                    for (int i = 0; i < nOfThreads; i++) {
-                        _drivers[i][_driverRun].finish();
-                    }
-                } 
-                catch (Exception e) {
-                    // Set output parameters for computeResultValue()
-                    tc.setDoubleParam(RESULT_VALUE, Double.NaN);
-                    tc.setLongParam(RUN_ITERATIONS_SUM, 0L);
-                    tc.setDoubleParam(RUN_TIME_SUM, Double.NaN);
-                    tc.setDoubleParam(ACTUAL_RUN_TIME, Double.NaN);
-
-                    // Print stack trace unless in silent mode
-                    if (!Japex.silent) {
-                        e.printStackTrace();
-                    }
-                    
-                    // Increment Japex exit code as a counter for errors
-                    Japex.exitCode++;
-                } 
-                finally {
-                    if (futures != null) {
-                        // Cancel all remaining threads
-                        for (int i = 0; i < nOfThreads; i++) {
-                            futures[i].cancel(true);
-                        }
-                    }
+                // Reuse the results of a test case completed before resuming
+                boolean resumed = resumeTestCase(tc);
+                if (!resumed) {
+                    executeTestCase(tc, nOfThreads, nOfCpus);
                 }
                 
                 double result;
@@ -612,13 +1541,421 @@ public class Engine {
                     outputWriter.print(tc.getParam(RESULT_VALUE) + ",");
                     outputWriter.flush();
                 }
+                
+                _monitor.completeTestCases(1);
+                if (!resumed) {
+                    for (EngineListener listener : _listeners) {
+                        listener.testCaseCompleted(_driverImpl, _driverRun, tc);
+                    }
+                }
             }
         } 
         catch (Exception e) {
             throw new JapexException(e);
         }
     }
+    
+    /**
+     * Execute the prepare, warmup, run and finish phases of a test case 
+     * in the current run of the current driver.
+     */
+    private void executeTestCase(TestCaseImpl tc, int nOfThreads, int nOfCpus) {
+        double endTime;
+        
+        Future<?>[] futures = null;
+        List<Long> gCStartTimes = null;
+        long[] jitStartCounters = null;
+        boolean reportGcPauses = tc.hasParam(REPORT_GC_PAUSES) && 
+            tc.getBooleanParam(REPORT_GC_PAUSES);
+        boolean profile = isSamplingProfile(tc) && 
+            _driverRun >= _driverImpl.getIntParam(WARMUPS_PER_DRIVER);
+        Object phase;
+        
+        for (EngineListener listener : _listeners) {
+            listener.testCaseStarted(_driverImpl, _driverRun, tc);
+        }
+        
+        // Record each run of the test case if japex.jfrScope is 'testCase'
+        JfrRecorder jfrRecorder = isJfrScope(tc, "testCase") ?
+            startJfrRecording(tc) : null;
+        
+        try {
+            // If nOfThreads == 1, re-use this thread unless using virtual threads
+            if (nOfThreads == 1 && !_virtualThreads) {
+                // -- Prepare phase --------------------------------------
+                
+                phase = beginPhase(tc, "prepare");
+                _drivers[0][_driverRun].setTestCase(tc);     // tc is shared!
+                _drivers[0][_driverRun].prepare();
+                JfrRecorder.endPhase(phase);
+                
+                // Warmup and run again if the JIT was active while running
+                int jitReruns = 0;
+                do {
+                    // -- Warmup phase ---------------------------------------
+                
+                    endTime = tc.hasParam(WARMUP_TIME) ?
+                        Util.currentTimeMillis() +
+                            Util.parseDuration(tc.getParam(WARMUP_TIME)) : 0L;
+                
+                    // First time call does warmup
+                    phase = beginPhase(tc, "warmup");
+                    _threadResults.reset();
+                    _drivers[0][_driverRun].setEndTime(endTime);
+                    _drivers[0][_driverRun].call();
+                    JfrRecorder.endPhase(phase);
+                    setWarmupSums(tc);
+                
+                    // Set actual warmup time using sum if just one thread
+                    tc.setDoubleParam(ACTUAL_WARMUP_TIME,
+                        tc.getDoubleParam(WARMUP_TIME_SUM));
+                
+                    // -- Run phase -------------------------------------------
+                
+                    endTime = tc.hasParam(RUN_TIME) ?
+                        Util.currentTimeMillis() +
+                            Util.parseDuration(tc.getParam(RUN_TIME)) : 0L;
+
+                    // Run GC and reset GC start times
+                    System.gc();                       
+                    gCStartTimes = getGCAbsoluteTimes();
+                    jitStartCounters = getJitCounters();
+                
+                    // Second time call does run
+                    phase = beginPhase(tc, "run");
+                    _threadResults.reset();
+                    if (reportGcPauses) {
+                        _gcPauseRecorder.start();
+                    }
+                    if (profile) {
+                        startProfiler(tc, Collections.singletonList(Thread.currentThread()));
+                    }
+                    _drivers[0][_driverRun].setEndTime(endTime);
+                    _drivers[0][_driverRun].call();
+                    setJitParams(tc, jitStartCounters);
+                    if (profile) {
+                        stopProfiler(tc);
+                    }
+                    JfrRecorder.endPhase(phase);
+                    if (reportGcPauses) {
+                        _gcPauseRecorder.stop(tc);
+                    }
+                    setRunSums(tc);
+                
+                    // Set actual run time using sum if there's one thread
+                    tc.setDoubleParam(ACTUAL_RUN_TIME,
+                        tc.getDoubleParam(RUN_TIME_SUM));
+                
+                    setLatencyParams(tc, nOfThreads);
+                } while (rerunAfterJit(tc, jitReruns++));
+            } 
+            else {  // nOfThreads > 1 or virtual threads
+                
+                // -- Prepare phase --------------------------------------
+                
+                // Initialize driver instance with test case object do prepare
+                phase = beginPhase(tc, "prepare");
+                for (int i = 0; i < nOfThreads; i++) {
+                    _drivers[i][_driverRun].setTestCase(tc);     // tc is shared!
+                    _drivers[i][_driverRun].prepare();
+                }
+                JfrRecorder.endPhase(phase);
+                
+                // Warmup and run again if the JIT was active while running
+                futures = new Future<?>[nOfThreads];
+                int jitReruns = 0;
+                do {
+                    // -- Warmup phase ---------------------------------------
+                
+                    // Fork all threads -- first time drivers will warmup
+                    phase = beginPhase(tc, "warmup");
+                    _threadResults.reset();
+                    executePhase(tc, WARMUP_TIME, futures, nOfThreads, nOfCpus, false);
+                    JfrRecorder.endPhase(phase);
+                    setWarmupSums(tc);
+                
+                    // Set actual warmup time using average over threads
+                    tc.setDoubleParam(ACTUAL_WARMUP_TIME,
+                        tc.getDoubleParam(WARMUP_TIME_SUM) / nOfThreads);
+                
+                    // -- Run phase -------------------------------------------
+                
+                    // Run GC and reset GC start times
+                    System.gc();                       
+                    gCStartTimes = getGCAbsoluteTimes();
+                    jitStartCounters = getJitCounters();
+                
+                    // Fork all threads -- second time drivers will run
+                    phase = beginPhase(tc, "run");
+                    _threadResults.reset();
+                    if (_virtualThreads) {
+                        _virtualThreadMonitor.start();
+                    }
+                    if (reportGcPauses) {
+                        _gcPauseRecorder.start();
+                    }
+                    StartBarrier startBarrier = 
+                        executePhase(tc, RUN_TIME, futures, nOfThreads, nOfCpus, profile);
+                    setJitParams(tc, jitStartCounters);
+                    JfrRecorder.endPhase(phase);
+                    if (_virtualThreads) {
+                        _virtualThreadMonitor.stop(tc);
+                    }
+                    if (reportGcPauses) {
+                        _gcPauseRecorder.stop(tc);
+                    }
+                    setRunSums(tc);
+                
+                    // Set actual run time using average over threads
+                    tc.setDoubleParam(ACTUAL_RUN_TIME,
+                        tc.getDoubleParam(RUN_TIME_SUM) / nOfThreads);                        
+                
+                    setLatencyParams(tc, nOfThreads);
+                    setSkewParams(tc, startBarrier);
+                } while (rerunAfterJit(tc, jitReruns++));
+            }
+            
+            // Get the total time take for GC over the measurement period
+            _gCTime = getGCRelativeTotalTime(gCStartTimes);
+            
+            // Finish phase
+            phase = beginPhase(tc, "finish");
+            for (int i = 0; i < nOfThreads; i++) {
+                _drivers[i][_driverRun].finish();
+            }
+            JfrRecorder.endPhase(phase);
+        } 
+        catch (Exception e) {
+            // Set output parameters for computeResultValue()
+            tc.setDoubleParam(RESULT_VALUE, Double.NaN);
+            tc.setLongParam(RUN_ITERATIONS_SUM, 0L);
+            tc.setDoubleParam(RUN_TIME_SUM, Double.NaN);
+            tc.setDoubleParam(ACTUAL_RUN_TIME, Double.NaN);
+
+            // Print stack trace unless in silent mode
+            if (!Japex.silent) {
+                e.printStackTrace();
+            }
+            
+            // Increment Japex exit code as a counter for errors
+            Japex.incrementExitCode();
+        } 
+        finally {
+            if (futures != null) {
+                // Cancel all remaining threads
+                for (int i = 0; i < nOfThreads; i++) {
+                    futures[i].cancel(true);
+                }
+            }
+            if (jfrRecorder != null) {
+                stopJfrRecording(jfrRecorder, tc, 
+                    Util.toFileName(_driverImpl.getName()) + "-run" 
+                    + (_driverRun + 1) + "-" 
+                    + Util.toFileName(tc.getName()) + ".jfr");
+            }
+        }
+    }
 
+    /**
+     * Set the params of a test case in the current run of the current 
+     * driver if it completed before resuming. Returns true if so.
+     */
+    private boolean resumeTestCase(TestCaseImpl tc) {
+        return resumeTestCase(tc, _driverRun);
+    }
+    
+    private boolean resumeTestCase(TestCaseImpl tc, int run) {
+        if (_resumedResults == null) {
+            return false;
+        }
+        Map<String, String> params = _resumedResults.get(
+            ResultStreamListener.getKey(_driverImpl.getName(), run, tc.getName()));
+        if (params == null) {
+            return false;
+        }
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            tc.setRawParam(param.getKey(), param.getValue());
+        }
+        return true;
+    }
+    
+    /**
+     * Set the params of every test case of the current driver, executed 
+     * in child JVMs, if all forks completed before resuming. As runs of 
+     * a fork cannot be executed separately, forks are executed again 
+     * unless all of them completed. Returns true if all completed.
+     */
+    private boolean resumeForks() {
+        if (_resumedResults == null) {
+            return false;
+        }
+        int runsPerDriver = _driverImpl.getIntParam(RUNS_PER_DRIVER);
+        int warmupsPerDriver = _driverImpl.getIntParam(WARMUPS_PER_DRIVER);
+        int forks = getForks();
+        
+        // Warmup runs are only kept for the first fork
+        int totalRuns = warmupsPerDriver + forks * runsPerDriver;
+        for (int r = 0; r < totalRuns; r++) {
+            for (TestCaseImpl tc : _driverImpl.getTestCases(0)) {
+                if (!_resumedResults.containsKey(ResultStreamListener.getKey(
+                        _driverImpl.getName(), r, tc.getName()))) 
+                {
+                    return false;
+                }
+            }
+        }
+        
+        while (_driverImpl.getNumberOfRuns() < totalRuns) {
+            _driverImpl.addRun();
+        }
+        for (int r = 0; r < totalRuns; r++) {
+            for (TestCaseImpl tc : _driverImpl.getTestCases(r)) {
+                resumeTestCase(tc, r);
+            }
+        }
+        _monitor.completeTestCases(totalRuns * _driverImpl.getTestCases(0).size());
+        outputWriter.println("  " + _driverImpl.getName() + " resumed from " 
+            + forks + " completed fork(s)");
+        return true;
+    }
+    
+    /**
+     * Begin a phase of a test case, updating the engine's progress and,
+     * if japex.jfr is set, emitting a JFR phase event. Returns the event 
+     * to end, if any. Events are not even defined otherwise, as loading 
+     * the JFR classes would affect the classes loaded and JIT activity 
+     * reported for the test case.
+     */
+    private Object beginPhase(TestCaseImpl tc, String phase) {
+        _monitor.setPhase(tc.getName(), phase, _threadResults);
+        return isJfrEnabled(tc) ? 
+            JfrRecorder.beginPhase(_driverImpl.getName(), tc.getName(), phase) : null;
+    }
+    
+    /**
+     * Returns true if japex.jfr is set. Nothing is recorded in test mode 
+     * as no reports are generated.
+     */
+    private boolean isJfrEnabled(ParamsImpl params) {
+        return !Japex.test && params.hasParam(JFR) && params.getBooleanParam(JFR);
+    }
+    
+    /**
+     * Returns true if japex.jfr is set and japex.jfrScope is as given. 
+     */
+    private boolean isJfrScope(ParamsImpl params, String scope) {
+        if (!isJfrEnabled(params)) {
+            return false;
+        }
+        String jfrScope = params.hasParam(JFR_SCOPE) ? 
+            params.getParam(JFR_SCOPE) : DEFAULT_JFR_SCOPE;
+        if (!jfrScope.equals("driver") && !jfrScope.equals("testCase")) {
+            throw new JapexException("Parameter 'japex.jfrScope' must be " 
+                + "'driver' or 'testCase'");
+        }
+        return jfrScope.equals(scope);
+    }
+    
+    /**
+     * Start a JFR recording using japex.jfrSettings. Returns null, after 
+     * printing a warning, if the recording cannot be started.
+     */
+    private JfrRecorder startJfrRecording(ParamsImpl params) {
+        try {
+            return new JfrRecorder(params.hasParam(JFR_SETTINGS) ? 
+                params.getParam(JFR_SETTINGS) : DEFAULT_JFR_SETTINGS);
+        }
+        catch (JapexException e) {
+            outputWriter.println("\n  Warning: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Write a JFR recording into the 'jfr' subdirectory of the report 
+     * directory and set japex.jfrFile to its location relative to it.
+     */
+    private void stopJfrRecording(JfrRecorder jfrRecorder, ParamsImpl params, 
+        String fileName) 
+    {
+        try {
+            jfrRecorder.stop(new File(new File(getReportDirectory(), "jfr"), fileName));
+            params.setParam(JFR_FILE, "jfr/" + fileName);
+        }
+        catch (JapexException e) {
+            outputWriter.println("\n  Warning: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Returns true if japex.profile is 'sampling'. Nothing is profiled
+     * in test mode as no reports are generated.
+     */
+    private boolean isSamplingProfile(ParamsImpl params) {
+        if (Japex.test || !params.hasParam(PROFILE)) {
+            return false;
+        }
+        String profile = params.getParam(PROFILE);
+        if (!profile.equals("none") && !profile.equals("sampling")) {
+            throw new JapexException("Parameter 'japex.profile' must be " 
+                + "'none' or 'sampling'");
+        }
+        return profile.equals("sampling");
+    }
+    
+    /**
+     * Start sampling the stacks of a list of threads every 
+     * japex.profileInterval millis, adding to those of previous runs.
+     */
+    private void startProfiler(TestCaseImpl tc, List<Thread> threads) {
+        Map<String, Integer> stacks = _profiles.get(tc.getName());
+        if (stacks == null) {
+            stacks = new HashMap<String, Integer>();
+            _profiles.put(tc.getName(), stacks);
+        }
+        _samplingProfiler.start(threads, tc.hasParam(PROFILE_INTERVAL) ? 
+            tc.getDoubleParam(PROFILE_INTERVAL) : 
+            Double.parseDouble(DEFAULT_PROFILE_INTERVAL), stacks);
+    }
+    
+    private void stopProfiler(TestCaseImpl tc) {
+        _samplingProfiler.stop(tc);
+        tc.setParam(FLAME_GRAPH, "profile/" + getProfileName(tc.getName()) + ".svg");
+    }
+    
+    private String getProfileName(String testCaseName) {
+        return Util.toFileName(_driverImpl.getName()) + "-" 
+            + Util.toFileName(testCaseName);
+    }
+    
+    /**
+     * Write the stacks sampled for each test case of the current driver
+     * into the 'profile' subdirectory of the report directory, both as 
+     * an SVG flame graph and as collapsed stacks.
+     */
+    private void writeFlameGraphs() {
+        if (_profiles.isEmpty()) {
+            return;
+        }
+        File profileDir = new File(getReportDirectory(), "profile");
+        profileDir.mkdirs();
+        for (Map.Entry<String, Map<String, Integer>> entry : _profiles.entrySet()) {
+            String name = getProfileName(entry.getKey());
+            try {
+                FlameGraph.writeSvg(entry.getValue(), 
+                    _driverImpl.getName() + ": " + entry.getKey(),
+                    new File(profileDir, name + ".svg"));
+                FlameGraph.writeCollapsed(entry.getValue(), 
+                    new File(profileDir, name + ".collapsed"));
+            }
+            catch (IOException e) {
+                outputWriter.println("\n  Warning: Unable to write flame graph '" 
+                    + name + "': " + e.getMessage());
+            }
+        }
+        _profiles.clear();
+    }
+    
     private void resetPeakMemoryUsage() {
         // Force GC before collecting current usage (from JLS 4th)
         Runtime rt = Runtime.getRuntime();
@@ -655,6 +1992,240 @@ public class Engine {
                 (afterHeapMemoryUsage - _beforeHeapMemoryUsage) / 1024.0);
     }
     
+    /**
+     * Executes a warmup or run phase on all the threads in the pool and
+     * waits for them to complete it. Threads are held at a start barrier 
+     * until every one of them has been scheduled; the end time of the
+     * phase, if any, is computed right before they are all released, 
+     * so that every thread gets the same window.
+     */
+    private StartBarrier executePhase(TestCaseImpl tc, String durationParam,
+        Future<?>[] futures, int nOfThreads, int nOfCpus, boolean profile) 
+        throws Exception 
+    {
+        // Spin only if every thread, and this one, can have its own CPU
+        StartBarrier startBarrier = new StartBarrier(nOfThreads,
+            !_virtualThreads && nOfThreads < nOfCpus);
+        
+        for (int i = 0; i < nOfThreads; i++) {
+            _drivers[i][_driverRun].setStartBarrier(startBarrier);
+            futures[i] = _threadPool.submit(_drivers[i][_driverRun]);
+        }
+        startBarrier.awaitArrival();
+        
+        // Sample the threads of this phase, known once all have arrived
+        if (profile) {
+            startProfiler(tc, startBarrier.getThreads());
+        }
+        
+        double endTime = tc.hasParam(durationParam) ?
+            Util.currentTimeMillis() +
+                Util.parseDuration(tc.getParam(durationParam)) : 0L;
+        for (int i = 0; i < nOfThreads; i++) {
+            _drivers[i][_driverRun].setEndTime(endTime);
+        }
+        startBarrier.release();
+        
+        // Wait for all threads to finish
+        try {
+            for (int i = 0; i < nOfThreads; i++) {
+                futures[i].get();
+            }
+        }
+        finally {
+            if (profile) {
+                stopProfiler(tc);
+            }
+        }
+        for (int i = 0; i < nOfThreads; i++) {
+            _drivers[i][_driverRun].setStartBarrier(null);
+        }
+        return startBarrier;
+    }
+    
+    /**
+     * Reports how far apart the threads of the run phase started and 
+     * finished. A start skew larger than japex.maxStartSkew times the 
+     * actual run time means that threads did not run concurrently for 
+     * a significant part of the phase and the result is suspect.
+     */
+    private void setSkewParams(TestCaseImpl tc, StartBarrier startBarrier) {
+        double startSkew = startBarrier.getStartSkew();
+        tc.setDoubleParam(START_SKEW, startSkew);
+        tc.setDoubleParam(STRAGGLER_TIME, startBarrier.getStragglerTime());
+        tc.setBooleanParam(START_SKEW_EXCEEDED, startSkew > 
+            tc.getDoubleParam(MAX_START_SKEW) * tc.getDoubleParam(ACTUAL_RUN_TIME));
+    }
+    
+    /**
+     * Merge per-thread warmup results into the test case. Must only be 
+     * called after all threads have completed the warmup phase.
+     */
+    private void setWarmupSums(TestCaseImpl tc) {
+        tc.setLongParam(WARMUP_ITERATIONS_SUM, _threadResults.getIterationsSum());
+        tc.setDoubleParam(WARMUP_TIME_SUM, _threadResults.getTimeSum());
+        
+        // Report warmup iterations per thread if warmup was adaptive, and
+        // 'maxTime' if any of the threads failed to reach steady state
+        if (JapexDriverBase.isAdaptiveWarmup(tc)) {
+            tc.setDoubleParam(ACTUAL_WARMUP_ITERATIONS, 
+                (double) _threadResults.getIterationsSum() / 
+                    _threadResults.getNumberOfThreads());
+            tc.setParam(WARMUP_END_REASON, 
+                _threadResults.getLongSum(ThreadResults.STEADY_STATE) == 
+                    _threadResults.getNumberOfThreads() ? "steadyState" : "maxTime");
+        }
+    }
+    
+    /**
+     * Merge per-thread run results into the test case. Must only be 
+     * called after all threads have completed the run phase.
+     */
+    private void setRunSums(TestCaseImpl tc) {
+        tc.setLongParam(RUN_ITERATIONS_SUM, _threadResults.getIterationsSum());
+        tc.setDoubleParam(RUN_TIME_SUM, _threadResults.getTimeSum());
+        
+        // Report batch size, possibly computed by each thread in auto mode
+        if (tc.hasParam(BATCH_SIZE)) {
+            tc.setDoubleParam(ACTUAL_BATCH_SIZE, 
+                (double) _threadResults.getLongSum(ThreadResults.BATCH_SIZE) /
+                    _threadResults.getNumberOfThreads());
+        }
+        
+        // Report bytes allocated per iteration if measured by every thread
+        long iterations = tc.getLongParam(RUN_ITERATIONS_SUM);
+        if (tc.getBooleanParam(REPORT_ALLOCATION) || isResultUnit("bytes/op")) {
+            long allocatedBytes = _threadResults.getMeasuredSum(ThreadResults.ALLOCATED_BYTES);
+            if (allocatedBytes >= 0L) {
+                tc.setDoubleParam(ALLOCATED_BYTES_PER_OP, 
+                    (double) allocatedBytes / iterations);
+            }
+        }
+        
+        // Report CPU time per iteration and utilization if measured by every thread
+        if (tc.getBooleanParam(REPORT_CPU_TIME) || isResultUnit("cpuns")) {
+            long cpuTime = _threadResults.getMeasuredSum(ThreadResults.CPU_TIME);
+            long userTime = _threadResults.getMeasuredSum(ThreadResults.USER_TIME);
+            if (cpuTime >= 0L && userTime >= 0L) {
+                tc.setDoubleParam(CPU_TIME_PER_OP, (double) cpuTime / iterations);
+                tc.setDoubleParam(USER_TIME_PER_OP, (double) userTime / iterations);
+                tc.setDoubleParam(SYSTEM_TIME_PER_OP, 
+                    (double) (cpuTime - userTime) / iterations);
+                
+                // Utilization relative to the wall time of every thread
+                tc.setDoubleParam(CPU_UTILIZATION, 100.0 * 
+                    Util.nanosToMillis(cpuTime) / _threadResults.getTimeSum());
+            }
+        }
+    }
+    
+    private boolean isResultUnit(String unit) {
+        String resultUnit = _testSuite.getParam(RESULT_UNIT);
+        return resultUnit != null && resultUnit.equalsIgnoreCase(unit);
+    }
+    
+    /**
+     * Merge the latency histograms recorded by each thread during the 
+     * run phase and set percentiles (in microseconds) as output params.
+     * If japex.targetRate is set, also set the achieved rate and the 
+     * percentiles of the latencies measured from intended start times.
+     */
+    private void setLatencyParams(TestCaseImpl tc, int nOfThreads) {
+        boolean openLoop = tc.hasParam(TARGET_RATE);
+        if (!openLoop && (!tc.hasParam(LATENCY_HISTOGRAM) || 
+                !tc.getBooleanParam(LATENCY_HISTOGRAM))) 
+        {
+            return;
+        }
+        
+        _latencyHistogram.reset();
+        for (int i = 0; i < nOfThreads; i++) {
+            LatencyHistogram h = _drivers[i][_driverRun].getLatencyHistogram();
+            if (h != null) {
+                _latencyHistogram.add(h);
+            }
+        }
+        setPercentileParams(tc, _latencyHistogram, LATENCY_MEAN, LATENCY_P50, 
+            LATENCY_P90, LATENCY_P99, LATENCY_P999, LATENCY_MAX);
+        
+        if (openLoop) {
+            _latencyHistogram.reset();
+            for (int i = 0; i < nOfThreads; i++) {
+                LatencyHistogram h = _drivers[i][_driverRun].getCorrectedHistogram();
+                if (h != null) {
+                    _latencyHistogram.add(h);
+                }
+            }
+            setPercentileParams(tc, _latencyHistogram, CORRECTED_LATENCY_MEAN, 
+                CORRECTED_LATENCY_P50, CORRECTED_LATENCY_P90, CORRECTED_LATENCY_P99, 
+                CORRECTED_LATENCY_P999, CORRECTED_LATENCY_MAX);
+            
+            tc.setDoubleParam(ACHIEVED_RATE, tc.getLongParam(RUN_ITERATIONS_SUM) /
+                (tc.getDoubleParam(ACTUAL_RUN_TIME) / 1000.0));
+        }
+    }
+    
+    private void setPercentileParams(TestCaseImpl tc, LatencyHistogram h, 
+        String mean, String p50, String p90, String p99, String p999, String max) 
+    {
+        tc.setDoubleParam(mean, h.getMean() / 1000.0);
+        tc.setDoubleParam(p50, h.getValueAtPercentile(50.0) / 1000.0);
+        tc.setDoubleParam(p90, h.getValueAtPercentile(90.0) / 1000.0);
+        tc.setDoubleParam(p99, h.getValueAtPercentile(99.0) / 1000.0);
+        tc.setDoubleParam(p999, h.getValueAtPercentile(99.9) / 1000.0);
+        tc.setDoubleParam(max, h.getMax() / 1000.0);
+    }
+    
+    /**
+     * Returns the total time spent in JIT compilation, in millis, or -1 
+     * if the JVM does not report it, the total number of classes loaded 
+     * since the JVM started and the current time in millis.
+     */
+    private long[] getJitCounters() {
+        CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+        long compilationTime = (compilation != null && 
+            compilation.isCompilationTimeMonitoringSupported()) ?
+                compilation.getTotalCompilationTime() : -1L;
+        return new long[] { compilationTime,
+            ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount(),
+            System.currentTimeMillis() };
+    }
+    
+    /**
+     * Set the time spent in JIT compilation and the number of classes 
+     * loaded during the run phase. Compilation for more than 
+     * JIT_SUSPECT_FRACTION of the phase indicates that code was still 
+     * being compiled, or deoptimized and recompiled, while measuring, in 
+     * which case the result is flagged as suspect.
+     */
+    private void setJitParams(TestCaseImpl tc, long[] start) {
+        long[] end = getJitCounters();
+        tc.setLongParam(CLASSES_LOADED, end[1] - start[1]);
+        if (start[0] >= 0L) {
+            long compilationTime = end[0] - start[0];
+            tc.setLongParam(JIT_COMPILATION_TIME, compilationTime);
+            tc.setBooleanParam(JIT_SUSPECT, 
+                compilationTime > JIT_SUSPECT_FRACTION * (end[2] - start[2]));
+        }
+    }
+    
+    /**
+     * Returns true if the warmup and run phases of a test case should be
+     * executed again because its result is suspect of JIT interference
+     * and fewer than japex.maxJitReruns reruns have been done.
+     */
+    private boolean rerunAfterJit(TestCaseImpl tc, int jitReruns) {
+        int maxJitReruns = tc.hasParam(MAX_JIT_RERUNS) ? 
+            tc.getIntParam(MAX_JIT_RERUNS) : 0;
+        if (maxJitReruns == 0) {
+            return false;
+        }
+        boolean rerun = tc.hasParam(JIT_SUSPECT) && tc.getBooleanParam(JIT_SUSPECT) 
+            && jitReruns < maxJitReruns;
+        tc.setIntParam(JIT_RERUNS, rerun ? jitReruns + 1 : jitReruns);
+        return rerun;
+    }
+    
     private List<Long> getGCAbsoluteTimes() {
         List<Long> gCTimes = new ArrayList<Long>();
         for (GarbageCollectorMXBean gcc : _gCCollectors) {
@@ -696,10 +2267,24 @@ public class Engine {
 
         // Get actual run time
         double actualTime = tc.getDoubleParam(ACTUAL_RUN_TIME);
+        
+        // Subtract harness overhead measured during calibration
+        double runTime = actualTime;
+        if (_driverImpl.getBooleanParam(SUBTRACT_OVERHEAD) && !tc.hasParam(TARGET_RATE)) {
+            runTime = actualTime - getOverheadTime(tc, nOfThreads);
+            if (runTime > 0.0) {
+                tc.setDoubleParam(OVERHEAD_TIME, actualTime - runTime);
+            }
+            else {
+                // Overhead exceeds run time, leave result uncorrected
+                runTime = actualTime;
+                tc.setDoubleParam(OVERHEAD_TIME, 0.0);
+            }
+        }
 
         // Tx = sum(I_k) / T for k in 1..N
         double tps = tc.getLongParam(RUN_ITERATIONS_SUM) /
-              (actualTime / 1000.0);
+              (runTime / 1000.0);
         
         // Compute latency as L = (min(C, N) / Tx) * 1000
         double l = Math.min(nOfCpus, nOfThreads) / tps * 1000.0;
@@ -724,18 +2309,67 @@ public class Engine {
             // Calculate % of GC relative to the run time
             return (_gCTime / actualTime) * 100.0;
         }
+        else if (resultUnit.equalsIgnoreCase("bytes/op")) {
+            // Set by setRunSums() if allocation can be measured
+            if (!tc.hasParam(ALLOCATED_BYTES_PER_OP)) {
+                throw new JapexException("Unable to compute japex.resultValue " +
+                    "because this VM cannot measure allocated bytes per thread.");
+            }
+            return tc.getDoubleParam(ALLOCATED_BYTES_PER_OP);
+        }
+        else if (resultUnit.equalsIgnoreCase("cpuns")) {
+            // Set by setRunSums() if CPU time can be measured
+            if (!tc.hasParam(CPU_TIME_PER_OP)) {
+                throw new JapexException("Unable to compute japex.resultValue " +
+                    "because this VM cannot measure CPU time per thread.");
+            }
+            return tc.getDoubleParam(CPU_TIME_PER_OP);
+        }
         else {
             throw new JapexException("Unknown value '" + 
                 resultUnit + "' for global param japex.resultUnit.");
         }
     }
     
+    /**
+     * Returns the time in millis spent by each thread in the harness
+     * rather than in the driver during the run phase. That is, the loop
+     * overhead for every iteration plus the timer latency for every
+     * clock read.
+     */
+    private double getOverheadTime(TestCase tc, int nOfThreads) {
+        double iterations = (double) tc.getLongParam(RUN_ITERATIONS_SUM) / nOfThreads;
+        
+        // Each call is timed with two clock reads if using a histogram,
+        // otherwise the clock is read once per batch in japex.runTime mode
+        double overhead = _loopOverhead;
+        if (tc.hasParam(LATENCY_HISTOGRAM) && tc.getBooleanParam(LATENCY_HISTOGRAM)) {
+            overhead += 2.0 * _timerLatency;
+        }
+        else if (tc.hasParam(RUN_TIME)) {
+            double batchSize = tc.hasParam(ACTUAL_BATCH_SIZE) ? 
+                tc.getDoubleParam(ACTUAL_BATCH_SIZE) : 1.0;
+            overhead += _timerLatency / batchSize;
+        }
+        return iterations * overhead / Util.millisToNanos(1L);
+    }
+    
     /**
      * Calculates the time of the warmup and run phases. Returns an array 
      * of size 3 with hours, minutes and seconds. Note: if japex.runsPerDriver
      * is redefined by any driver, this estimate will be off.
      */
     private int[] estimateRunningTime(TestSuiteImpl testSuite) {        
+        long seconds = estimateRunningSeconds(testSuite);
+        
+        int[] hms = new int[3];
+        hms[0] = (int) (seconds / 60 / 60);
+        hms[1] = (int) ((seconds / 60) % 60);
+        hms[2] = (int) (seconds % 60);
+        return hms;
+    }
+    
+    private long estimateRunningSeconds(TestSuiteImpl testSuite) {        
         int nOfDrivers = testSuite.getDriverInfoList().size();
         int nOfTests = ((DriverImpl) testSuite.getDriverInfoList().get(0)).getTestCases(0).size();
     
@@ -743,17 +2377,15 @@ public class Engine {
         String warmupTime = testSuite.getParam(WARMUP_TIME);
         int actualRuns = testSuite.getIntParam(RUNS_PER_DRIVER) +
             testSuite.getIntParam(WARMUPS_PER_DRIVER);
+        if (testSuite.hasParam(FORKS) && testSuite.getIntParam(FORKS) > 1) {
+            actualRuns *= testSuite.getIntParam(FORKS);
+        }
         
         long seconds = (long)
             (nOfDrivers * nOfTests * (Util.parseDuration(warmupTime) / 1000.0) +
             nOfDrivers * nOfTests * (Util.parseDuration(runTime) / 1000.0)) *
             actualRuns;     
-        
-        int[] hms = new int[3];
-        hms[0] = (int) (seconds / 60 / 60);
-        hms[1] = (int) ((seconds / 60) % 60);
-        hms[2] = (int) (seconds % 60);
-        return hms;
+        return seconds;
     }
     
     public Map<String, ClassLoader> getNamedClassPaths() {
@@ -0,0 +1,83 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+/**
+ * Callback interface notified by the engine as a test suite executes, 
+ * so that results can be processed as soon as they are measured rather
+ * than only once the report is generated. Runs are numbered from 0 and 
+ * include warmup runs, see japex.warmupsPerDriver. Drivers executed in 
+ * child JVMs, see japex.forks, only notify the completion of each test
+ * case once a fork terminates. Listeners are called from the engine's 
+ * thread, or from one driver's thread at a time if japex.parallelDrivers
+ * is set, and any exception they throw aborts the test suite.
+ *
+ * @see EngineListenerAdapter
+ */
+public interface EngineListener {
+    
+    /**
+     * Called once the test suite is loaded, before executing any driver.
+     */
+    public void suiteStarted(TestSuite testSuite);
+    
+    public void driverStarted(Driver driver);
+    
+    public void runStarted(Driver driver, int run);
+    
+    public void testCaseStarted(Driver driver, int run, TestCase testCase);
+    
+    /**
+     * Called once a test case completes, with its output params set.
+     */
+    public void testCaseCompleted(Driver driver, int run, TestCase testCase);
+    
+    public void runCompleted(Driver driver, int run);
+    
+    /**
+     * Called once all runs of a driver complete, with its output params 
+     * other than the comparisons across drivers set.
+     */
+    public void driverCompleted(Driver driver);
+    
+    /**
+     * Called once every driver has been executed.
+     */
+    public void suiteCompleted(TestSuite testSuite);
+}
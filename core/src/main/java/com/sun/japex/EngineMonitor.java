@@ -0,0 +1,298 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import static com.sun.japex.Constants.*;
+
+/**
+ * Tracks the progress of an engine and exposes it through JMX. The 
+ * engine updates the current driver, run, test case and phase, while
+ * the number of iterations is read from the per-thread results of the 
+ * phase in progress as drivers publish it. Engines executing drivers in
+ * parallel each update their own view, see {@link #newView()}, and the
+ * driver, run, test case, phase and iterations reported are then those 
+ * of all the views.
+ */
+final class EngineMonitor implements JapexEngineMXBean {
+    
+    static final String OBJECT_NAME = "com.sun.japex:type=Engine";
+    
+    /**
+     * Minimum interval, in millis, over which the instantaneous 
+     * throughput is computed.
+     */
+    static final long THROUGHPUT_INTERVAL = 1000L;
+    
+    ObjectName _objectName;
+    
+    String _driver = "";
+    int _run;
+    String _testCase = "";
+    String _phase = "idle";
+    
+    /**
+     * Results of the phase in progress, null between phases.
+     */
+    ThreadResults _threadResults;
+    
+    long _startTime;
+    long _phaseStartTime;
+    
+    int _completedTestCases;
+    int _totalTestCases;
+    
+    /**
+     * Estimate of the total running time in seconds from japex.warmupTime
+     * and japex.runTime, or -1 if not available.
+     */
+    long _estimatedTime;
+    
+    long _lastIterations;
+    long _lastTime;
+    double _instantaneousThroughput;
+    
+    /**
+     * Monitor to which the test cases of this view are reported, or 
+     * null if this is not a view.
+     */
+    EngineMonitor _parent;
+    
+    /**
+     * Views of the engines currently executing drivers in parallel.
+     */
+    List<EngineMonitor> _views = new ArrayList<EngineMonitor>();
+    
+    /**
+     * Start tracking a test suite and register this MBean. Throws an 
+     * exception if it cannot be registered, e.g. if another engine in 
+     * the same VM is running, but tracking starts regardless.
+     */
+    synchronized void start(TestSuiteImpl testSuite, long estimatedTime) 
+        throws JMException 
+    {
+        _startTime = System.currentTimeMillis();
+        _estimatedTime = estimatedTime;
+        _completedTestCases = 0;
+        _totalTestCases = 0;
+        for (DriverImpl driver : testSuite.getDriverInfoList()) {
+            int runs = driver.getIntParam(RUNS_PER_DRIVER) + 
+                driver.getIntParam(WARMUPS_PER_DRIVER);
+            if (driver.hasParam(FORKS) && driver.getIntParam(FORKS) > 1) {
+                runs *= driver.getIntParam(FORKS);
+            }
+            _totalTestCases += runs * driver.getTestCases(0).size();
+        }
+        
+        ObjectName objectName = new ObjectName(OBJECT_NAME);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        _objectName = objectName;
+    }
+    
+    synchronized void stop() {
+        if (_objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(_objectName);
+            }
+            catch (Exception e) {
+                // Falls through
+            }
+            _objectName = null;
+        }
+        _phase = "idle";
+        _threadResults = null;
+    }
+    
+    /**
+     * Returns a monitor for an engine executing a driver in parallel with
+     * others, whose driver is reported by this monitor along with those 
+     * of the other views and whose test cases are added to this monitor.
+     * The view must be removed once the driver has been executed.
+     */
+    synchronized EngineMonitor newView() {
+        EngineMonitor view = new EngineMonitor();
+        view._parent = this;
+        _views.add(view);
+        return view;
+    }
+    
+    synchronized void removeView(EngineMonitor view) {
+        _views.remove(view);
+    }
+    
+    synchronized void setDriver(String driver) {
+        _driver = driver;
+    }
+    
+    synchronized void setRun(int run) {
+        _run = run + 1;
+    }
+    
+    synchronized void setPhase(String testCase, String phase, 
+        ThreadResults threadResults) 
+    {
+        _testCase = testCase;
+        _phase = phase;
+        _threadResults = threadResults;
+        _phaseStartTime = System.currentTimeMillis();
+        _lastIterations = 0L;
+        _lastTime = _phaseStartTime;
+        _instantaneousThroughput = 0.0;
+    }
+    
+    void addTestCases(int n) {
+        synchronized (this) {
+            _totalTestCases += n;
+        }
+        // Parent is only locked without holding the lock of a view
+        if (_parent != null) {
+            _parent.addTestCases(n);
+        }
+    }
+    
+    void completeTestCases(int n) {
+        synchronized (this) {
+            _completedTestCases += n;
+            _phase = "idle";
+            _threadResults = null;
+        }
+        if (_parent != null) {
+            _parent.completeTestCases(n);
+        }
+    }
+    
+    public synchronized String getDriver() {
+        if (_views.isEmpty()) {
+            return _driver;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (EngineMonitor view : _views) {
+            sb.append(sb.length() > 0 ? ", " : "").append(view.getDriver());
+        }
+        return sb.toString();
+    }
+    
+    public synchronized int getRun() {
+        if (_views.isEmpty()) {
+            return _run;
+        }
+        int run = Integer.MAX_VALUE;
+        for (EngineMonitor view : _views) {
+            run = Math.min(run, view.getRun());
+        }
+        return run;
+    }
+    
+    public synchronized String getTestCase() {
+        if (_views.isEmpty()) {
+            return _testCase;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (EngineMonitor view : _views) {
+            sb.append(sb.length() > 0 ? ", " : "").append(view.getTestCase());
+        }
+        return sb.toString();
+    }
+    
+    public synchronized String getPhase() {
+        if (_views.isEmpty()) {
+            return _phase;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (EngineMonitor view : _views) {
+            sb.append(sb.length() > 0 ? ", " : "").append(view.getPhase());
+        }
+        return sb.toString();
+    }
+    
+    public synchronized long getIterations() {
+        if (!_views.isEmpty()) {
+            long iterations = 0L;
+            for (EngineMonitor view : _views) {
+                iterations += view.getIterations();
+            }
+            return iterations;
+        }
+        return _phase.equals("run") && _threadResults != null ? 
+            _threadResults.getLongSum(ThreadResults.PROGRESS) : 0L;
+    }
+    
+    public synchronized double getInstantaneousThroughput() {
+        long now = System.currentTimeMillis();
+        if (now - _lastTime >= THROUGHPUT_INTERVAL) {
+            long iterations = getIterations();
+            _instantaneousThroughput = 
+                1000.0 * (iterations - _lastIterations) / (now - _lastTime);
+            _lastIterations = iterations;
+            _lastTime = now;
+        }
+        return _instantaneousThroughput;
+    }
+    
+    public synchronized double getRunningThroughput() {
+        long elapsed = System.currentTimeMillis() - _phaseStartTime;
+        return elapsed > 0 ? 1000.0 * getIterations() / elapsed : 0.0;
+    }
+    
+    public synchronized int getCompletedTestCases() {
+        return _completedTestCases;
+    }
+    
+    public synchronized int getTotalTestCases() {
+        return _totalTestCases;
+    }
+    
+    public synchronized long getElapsedTime() {
+        return (System.currentTimeMillis() - _startTime) / 1000L;
+    }
+    
+    public synchronized long getEstimatedTimeRemaining() {
+        long elapsed = getElapsedTime();
+        if (_completedTestCases > 0) {
+            return (long) ((double) elapsed / _completedTestCases 
+                * (_totalTestCases - _completedTestCases));
+        }
+        return _estimatedTime >= 0 ? Math.max(0L, _estimatedTime - elapsed) : -1L;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Writes collapsed stacks, as aggregated by {@link SamplingProfiler},
+ * as an SVG flame graph. Each frame is drawn above its caller with a
+ * width proportional to the number of samples in which it was observed,
+ * and frames with the same caller are merged and sorted by name. The
+ * number of samples of a frame is shown when the pointer hovers over it.
+ */
+final class FlameGraph {
+    
+    static final int WIDTH = 1200;
+    static final int FRAME_HEIGHT = 16;
+    static final int MARGIN = 10;
+    static final int TITLE_HEIGHT = 30;
+    static final double CHAR_WIDTH = 7.0;
+    static final double MIN_FRAME_WIDTH = 0.1;
+    
+    /**
+     * A frame and the frames it calls, with the number of samples in 
+     * which it was observed.
+     */
+    static class Node {
+        String _name;
+        int _samples;
+        Map<String, Node> _children = new TreeMap<String, Node>();
+        
+        Node(String name) {
+            _name = name;
+        }
+        
+        Node getChild(String name) {
+            Node child = _children.get(name);
+            if (child == null) {
+                child = new Node(name);
+                _children.put(name, child);
+            }
+            return child;
+        }
+        
+        int getDepth() {
+            int depth = 0;
+            for (Node child : _children.values()) {
+                depth = Math.max(depth, child.getDepth());
+            }
+            return depth + 1;
+        }
+    }
+    
+    /**
+     * Write collapsed stacks to a text file, one stack and its number
+     * of samples per line, as read by other flame graph tools.
+     */
+    static void writeCollapsed(Map<String, Integer> stacks, File file) 
+        throws IOException 
+    {
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(
+            new FileOutputStream(file), "UTF-8"));
+        try {
+            for (Map.Entry<String, Integer> entry : new TreeMap<String, Integer>(stacks).entrySet()) {
+                out.println(entry.getKey() + " " + entry.getValue());
+            }
+        }
+        finally {
+            out.close();
+        }
+    }
+    
+    /**
+     * Write collapsed stacks as an SVG flame graph.
+     */
+    static void writeSvg(Map<String, Integer> stacks, String title, File file) 
+        throws IOException 
+    {
+        Node root = new Node("all");
+        for (Map.Entry<String, Integer> entry : stacks.entrySet()) {
+            int samples = entry.getValue();
+            Node node = root;
+            node._samples += samples;
+            for (String frame : entry.getKey().split(";")) {
+                node = node.getChild(frame);
+                node._samples += samples;
+            }
+        }
+        
+        int depth = root.getDepth();
+        int height = TITLE_HEIGHT + depth * FRAME_HEIGHT + 2 * MARGIN;
+        
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(
+            new FileOutputStream(file), "UTF-8"));
+        try {
+            out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            out.println("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\" "
+                + "width=\"" + WIDTH + "\" height=\"" + height + "\" "
+                + "font-family=\"Verdana\" font-size=\"12\">");
+            out.println("<rect x=\"0\" y=\"0\" width=\"" + WIDTH + "\" height=\"" 
+                + height + "\" fill=\"#f8f8f8\"/>");
+            out.println("<text x=\"" + (WIDTH / 2) + "\" y=\"" + (TITLE_HEIGHT - 10) 
+                + "\" text-anchor=\"middle\" font-size=\"16\">" + escape(title) 
+                + " (" + root._samples + " samples)</text>");
+            if (root._samples > 0) {
+                writeNode(out, root, root._samples, MARGIN, height - MARGIN - FRAME_HEIGHT,
+                    (double) (WIDTH - 2 * MARGIN) / root._samples);
+            }
+            out.println("</svg>");
+        }
+        finally {
+            out.close();
+        }
+    }
+    
+    static void writeNode(PrintWriter out, Node node, int total, double x, int y, 
+        double scale) 
+    {
+        double width = node._samples * scale;
+        if (width < MIN_FRAME_WIDTH) {
+            return;
+        }
+        
+        String name = escape(node._name);
+        out.println("<g><title>" + name + " (" + node._samples + " samples, " 
+            + Util.formatDouble(100.0 * node._samples / total) + "%)</title>");
+        out.println("<rect x=\"" + Util.formatDouble(x) + "\" y=\"" + y 
+            + "\" width=\"" + Util.formatDouble(width) + "\" height=\"" 
+            + (FRAME_HEIGHT - 1) + "\" fill=\"" + getColor(node._name) + "\"/>");
+        
+        // Truncate name to fit in frame, if possible
+        int chars = (int) ((width - 6) / CHAR_WIDTH);
+        if (chars >= 3) {
+            String label = node._name.length() <= chars ? node._name 
+                : node._name.substring(0, chars - 2) + "..";
+            out.println("<text x=\"" + Util.formatDouble(x + 3) + "\" y=\"" 
+                + (y + FRAME_HEIGHT - 4) + "\">" + escape(label) + "</text>");
+        }
+        out.println("</g>");
+        
+        for (Node child : node._children.values()) {
+            writeNode(out, child, total, x, y - FRAME_HEIGHT, scale);
+            x += child._samples * scale;
+        }
+    }
+    
+    /**
+     * Returns a warm color derived from a frame's name, so that the 
+     * same frame has the same color in every flame graph.
+     */
+    static String getColor(String name) {
+        int hash = name.hashCode();
+        int r = 205 + (hash & 0xff) * 50 / 255;
+        int g = ((hash >>> 8) & 0xff) * 230 / 255;
+        int b = ((hash >>> 16) & 0xff) * 55 / 255;
+        return "rgb(" + r + "," + g + "," + b + ")";
+    }
+    
+    static String escape(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
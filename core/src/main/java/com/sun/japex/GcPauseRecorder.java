@@ -0,0 +1,251 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.*;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import static com.sun.japex.Constants.*;
+
+/**
+ * Records every garbage collection that completes during a run phase 
+ * using the notifications emitted by <code>GarbageCollectorMXBean</code>,
+ * so that the distribution of GC pauses, and not only their total time,
+ * can be reported for each test case. Notifications are decoded from 
+ * their <code>CompositeData</code> rather than through 
+ * <code>com.sun.management.GarbageCollectionNotificationInfo</code>, 
+ * so nothing is recorded on VMs that do not emit them.
+ */
+final class GcPauseRecorder implements NotificationListener {
+    
+    static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+    
+    /**
+     * Maximum time to wait, in millis, for notifications of collections
+     * that completed during the run phase but were not yet delivered.
+     */
+    static final long DELIVERY_TIMEOUT = 1000L;
+    
+    static final int KB = 1024;
+    
+    /**
+     * Pause times, in millis, of each collector during the run phase.
+     */
+    final Map<String, List<Double>> _pauses = new LinkedHashMap<String, List<Double>>();
+    
+    long _promotedBytes;
+    
+    long _maxHeapAfterGc;
+    
+    /**
+     * Names of the heap memory pools, the only ones counted in the heap
+     * usage after a collection, as notifications also report non-heap
+     * pools such as the metaspace and the code cache.
+     */
+    final Set<String> _heapPools = new HashSet<String>();
+    
+    int _notifications;
+    
+    long _startCollectionCount;
+    
+    boolean _recording;
+    
+    synchronized void start() {
+        _pauses.clear();
+        _promotedBytes = 0L;
+        _maxHeapAfterGc = 0L;
+        _notifications = 0;
+        _recording = true;
+        _startCollectionCount = getCollectionCount();
+        _heapPools.clear();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                _heapPools.add(pool.getName());
+            }
+        }
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            // Report every collector in every run, even if it did not run
+            _pauses.put(gc.getName(), new ArrayList<Double>());
+            if (gc instanceof NotificationEmitter) {
+                ((NotificationEmitter) gc).addNotificationListener(this, null, null);
+            }
+        }
+    }
+    
+    /**
+     * Set the number, total time, maximum and 99th percentile of the GC 
+     * pauses of each collector and of all collectors, as well as the 
+     * bytes promoted to the old generation and the maximum heap usage 
+     * after a collection.
+     */
+    void stop(TestCaseImpl tc) {
+        // Wait until notifications of every collection have been delivered
+        long collections = getCollectionCount() - _startCollectionCount;
+        long deadline = System.currentTimeMillis() + DELIVERY_TIMEOUT;
+        synchronized (this) {
+            while (_notifications < collections && System.currentTimeMillis() < deadline) {
+                try {
+                    wait(1L);
+                }
+                catch (InterruptedException e) {
+                    break;
+                }
+            }
+            _recording = false;
+        }
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                try {
+                    ((NotificationEmitter) gc).removeNotificationListener(this);
+                }
+                catch (Exception e) {
+                    // Falls through, listener not registered
+                }
+            }
+        }
+        
+        synchronized (this) {
+            List<Double> allPauses = new ArrayList<Double>();
+            for (Map.Entry<String, List<Double>> entry : _pauses.entrySet()) {
+                setPauseParams(tc, GC_PARAM_PREFIX + toParamName(entry.getKey()), 
+                    entry.getValue());
+                allPauses.addAll(entry.getValue());
+            }
+            setPauseParams(tc, GC_PARAM_PREFIX + "Pause", allPauses);
+            tc.setLongParam(GC_PROMOTED_BYTES, _promotedBytes);
+            tc.setLongParam(GC_HEAP_AFTER_GC_MAX, _maxHeapAfterGc / KB);
+        }
+    }
+    
+    static void setPauseParams(TestCaseImpl tc, String prefix, List<Double> pauses) {
+        double[] values = new double[pauses.size()];
+        double total = 0.0, max = 0.0;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = pauses.get(i);
+            total += values[i];
+            max = Math.max(max, values[i]);
+        }
+        tc.setIntParam(prefix + "Count", values.length);
+        tc.setDoubleParam(prefix + "Time", total);
+        tc.setDoubleParam(prefix + "Max", max);
+        tc.setDoubleParam(prefix + "P99", 
+            values.length > 0 ? Util.percentile(values, 0.99) : 0.0);
+    }
+    
+    /**
+     * Returns a collector name, such as 'G1 Young Generation', with all 
+     * characters that cannot appear in an XML element name removed.
+     */
+    static String toParamName(String name) {
+        StringBuffer buffer = new StringBuffer();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                buffer.append(c);
+            }
+        }
+        return buffer.toString();
+    }
+    
+    static long getCollectionCount() {
+        long count = 0L;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0L, gc.getCollectionCount());
+        }
+        return count;
+    }
+    
+    /**
+     * Called on a VM notification thread after each collection.
+     */
+    public synchronized void handleNotification(Notification notification, Object handback) {
+        if (!_recording || !GC_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        _notifications++;
+        notifyAll();
+        
+        CompositeData info = (CompositeData) notification.getUserData();
+        String gcName = (String) info.get("gcName");
+        String gcAction = (String) info.get("gcAction");
+        CompositeData gcInfo = (CompositeData) info.get("gcInfo");
+        
+        // Concurrent cycles, such as those of ZGC, are not pauses
+        if (gcAction.indexOf("cycle") < 0) {
+            List<Double> pauses = _pauses.get(gcName);
+            if (pauses == null) {     // collector not known at start
+                pauses = new ArrayList<Double>();
+                _pauses.put(gcName, pauses);
+            }
+            pauses.add(Double.valueOf(((Long) gcInfo.get("duration")).doubleValue()));
+        }
+        
+        // Compare usage of each memory pool before and after collection
+        TabularData before = (TabularData) gcInfo.get("memoryUsageBeforeGc");
+        TabularData after = (TabularData) gcInfo.get("memoryUsageAfterGc");
+        long heapAfterGc = 0L;
+        for (Object row : after.values()) {
+            CompositeData entry = (CompositeData) row;
+            String pool = (String) entry.get("key");
+            long used = (Long) ((CompositeData) entry.get("value")).get("used");
+            if (_heapPools.contains(pool)) {
+                heapAfterGc += used;
+            }
+            
+            // Growth of the old generation is due to promotion
+            if (pool.indexOf("Old") >= 0 || pool.indexOf("Tenured") >= 0) {
+                CompositeData beforeEntry = before.get(new Object[] { pool });
+                if (beforeEntry != null) {
+                    long usedBefore = (Long) ((CompositeData) 
+                        beforeEntry.get("value")).get("used");
+                    _promotedBytes += Math.max(0L, used - usedBefore);
+                }
+            }
+        }
+        _maxHeapAfterGc = Math.max(_maxHeapAfterGc, heapAfterGc);
+    }
+}
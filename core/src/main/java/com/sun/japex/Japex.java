@@ -71,9 +71,20 @@ public class Japex {
     public static boolean last = false;
     private PrintWriter outputWriter = new PrintWriter(System.out);
     private File outputDirectory;
+    private File resumeDirectory;
+    private int coordinatorPort = -1;
+    private String coordinatorAddress;
     
     public static int exitCode = 0;
     
+    /**
+     * Increment the exit code, used as a counter for errors, from any 
+     * of the threads executing drivers or work units.
+     */
+    public static synchronized void incrementExitCode() {
+        exitCode++;
+    }
+    
     public static Date TODAY = new Date();
     
     private Engine engine;
@@ -94,6 +105,18 @@ public class Japex {
     	return engine.getNamedClassPaths();
     }
     
+    /**
+     * Register a listener notified as results are measured, e.g. to
+     * stream them rather than waiting for the report.
+     */
+    public void addEngineListener(EngineListener listener) {
+        engine.addEngineListener(listener);
+    }
+    
+    public void removeEngineListener(EngineListener listener) {
+        engine.removeEngineListener(listener);
+    }
+    
     public void setHtml(boolean html) {
         Japex.html = html;
     }
@@ -108,6 +131,9 @@ public class Japex {
 
         // Parse command-line arguments
         boolean merge = false;
+        File resumeDirectory = null;
+        int coordinatorPort = -1;
+        String coordinatorAddress = null;
         List<String> configFiles = new ArrayList<String>();
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals("-nohtml")) {
@@ -131,6 +157,26 @@ public class Japex {
             else if (args[i].equals("-merge")) {
                 merge = true;
             }
+            else if (args[i].equals("-resume") && i + 1 < args.length) {
+                resumeDirectory = new File(args[++i]);
+            }
+            else if (args[i].equals("-coordinator") && i + 1 < args.length) {
+                // Either port or address:port
+                String value = args[++i];
+                int k = value.lastIndexOf(':');
+                if (k > 0) {
+                    coordinatorAddress = value.substring(0, k);
+                }
+                try {
+                    coordinatorPort = Integer.parseInt(value.substring(k + 1));
+                }
+                catch (NumberFormatException e) {
+                    displayUsageAndExit();
+                }
+                if (coordinatorPort < 0 || coordinatorPort > 65535) {
+                    displayUsageAndExit();
+                }
+            }
             else {
                 configFiles.add(args[i]);
             }
@@ -144,14 +190,19 @@ public class Japex {
             displayUsageAndExit();            
         }
         
-        new Japex().run(configFiles);
+        Japex japex = new Japex();
+        japex.setResumeDirectory(resumeDirectory);
+        japex.setCoordinatorPort(coordinatorPort);
+        japex.setCoordinatorAddress(coordinatorAddress);
+        japex.run(configFiles);
         
         System.exit(exitCode);
     }
 
     private static void displayUsageAndExit() {
         System.err.println(
-            "Usage: japex [-verbose] [-silent] [-nohtml] [-line] [-test] [-merge] japex-config-file(s)\n" +
+            "Usage: japex [-verbose] [-silent] [-nohtml] [-line] [-test] [-merge] [-resume report-dir]\n" +
+            "             [-coordinator [address:]port] japex-config-file(s)\n" +
             "   -verbose: Display additional information about the benchmark's execution\n" +
             "   -silent : Do not display exceptions thrown by a driver\n" +
             "   -nohtml : Do not generate HTML report (only XML report)\n" +
@@ -160,7 +211,11 @@ public class Japex {
             "   -last   : Copy the report directory into a directory named 'last'\n" +
             "   -merge  : Merge japex-config-files\n" +
             "             An error will result if this option is absent and more than one\n" +
-            "             japex-config-file is present"
+            "             japex-config-file is present\n" +
+            "   -resume : Resume the execution whose reports are in report-dir, only executing\n" +
+            "             the test cases missing from its results.jsonl file\n" +
+            "   -coordinator: Distribute test cases across workers connecting to port, on\n" +
+            "             localhost unless an address is given, see com.sun.japex.JapexWorker"
                 );
         System.exit(1);        
     }
@@ -171,6 +226,16 @@ public class Japex {
     
     public void run(List<String> configFiles) {  
         try {            
+            // Report directory is otherwise derived from japex.reportsDirectory
+            if (resumeDirectory != null) {
+                engine.resume(resumeDirectory);
+            }
+            else if (outputDirectory != null) {
+                engine.setReportDirectory(getReportDirectory(outputDirectory));
+            }
+            engine.setCoordinatorPort(coordinatorPort);
+            engine.setCoordinatorAddress(coordinatorAddress);
+            
             // Create testsuite object from configuration file
             TestSuiteImpl testSuite = engine.start(configFiles);
             
@@ -179,13 +244,11 @@ public class Japex {
             
             // Create report directory
             String fileSep = System.getProperty("file.separator");
-            DateFormat df = new SimpleDateFormat("yyyy_MM_dd_HH_mm");
             
             if (outputDirectory == null) {
             	outputDirectory = new File(testSuite.getParam(Constants.REPORTS_DIRECTORY));
             }
-            File thisFile = new File(outputDirectory, df.format(TODAY));
-            String outputDir = thisFile.getAbsolutePath();
+            String outputDir = engine.getReportDirectory().getAbsolutePath();
             File lastFile = new File(outputDirectory, "last");
             String lastDir = lastFile.getAbsolutePath();          
 
@@ -225,6 +288,9 @@ public class Japex {
             final String testCaseChartBase = "testcase";
             int nOfCharts = chartGenerator.generateTestCaseCharts(outputDir
                 + fileSep + testCaseChartBase, ".jpg");
+            final String threadSweepChartBase = "threadsweep";
+            int nOfSweepCharts = chartGenerator.generateThreadSweepCharts(outputDir
+                + fileSep + threadSweepChartBase, ".jpg");
             
             // Extend report with chart info
             StringBuffer extendedReport = new StringBuffer();
@@ -235,6 +301,10 @@ public class Japex {
                 extendedReport.append(" <testCaseChart>" + 
                     testCaseChartBase + i + ".jpg" + "</testCaseChart>\n");
             }
+            for (int i = 0; i < nOfSweepCharts; i++) {
+                extendedReport.append(" <threadSweepChart>" + 
+                    threadSweepChartBase + i + ".jpg" + "</threadSweepChart>\n");
+            }
             extendedReport.append(report);
             extendedReport.append("</extendedTestSuiteReport>\n");
 
@@ -290,4 +360,38 @@ public class Japex {
 		return outputDirectory;
 	}
     
+    /**
+     * Resume the execution whose reports are in the given directory, 
+     * or execute from scratch if null. See {@link Engine#resume}.
+     */
+    public void setResumeDirectory(File resumeDirectory) {
+        this.resumeDirectory = resumeDirectory;
+    }
+    
+    /**
+     * Distribute the execution across workers connecting to the given 
+     * port, or execute in this process if -1. See {@link JapexCoordinator}.
+     */
+    public void setCoordinatorPort(int coordinatorPort) {
+        this.coordinatorPort = coordinatorPort;
+    }
+    
+    /**
+     * Address on which the coordinator listens, or null for the loopback
+     * interface. See {@link Engine#setCoordinatorAddress}.
+     */
+    public void setCoordinatorAddress(String coordinatorAddress) {
+        this.coordinatorAddress = coordinatorAddress;
+    }
+    
+    /**
+     * Returns the directory, under the given reports directory, in which
+     * the reports of this execution are generated. Its name is the date
+     * and time at which Japex was started.
+     */
+    public static File getReportDirectory(File reportsDirectory) {
+        DateFormat df = new SimpleDateFormat("yyyy_MM_dd_HH_mm");
+        return new File(reportsDirectory, df.format(TODAY));
+    }
+    
 }
@@ -0,0 +1,348 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinator of a test suite distributed across several processes, 
+ * usually on identical hosts. Workers, see {@link JapexWorker}, register
+ * by connecting to the coordinator's port at any time, and each work 
+ * unit, i.e. one fork of one test case of a driver, is sent to the next
+ * idle worker. The worker launches a child JVM as done for japex.forks
+ * and relays its output, so results are merged as described in 
+ * {@link JapexFork}. Coordinator and workers exchange the following 
+ * lines:
+ *
+ * <pre>
+ * worker:      @japex worker &lt;name&gt; &lt;token&gt;
+ * coordinator: @japex jvmArgs arg&amp;...
+ * coordinator: @japex run arg&amp;...
+ * worker:      (lines written by the child JVM)
+ * worker:      @japex exit &lt;exitCode&gt;
+ * ...
+ * coordinator: @japex done
+ * </pre>
+ *
+ * Since workers execute the JVM arguments sent by the coordinator, the
+ * coordinator only listens on the loopback interface unless an address 
+ * is given, and workers must send the token shared through the 
+ * environment variable TOKEN_VARIABLE. A unit whose worker is lost is 
+ * sent to another worker, up to MAX_ATTEMPTS times, and the remaining 
+ * units fail once all workers are lost.
+ */
+public class JapexCoordinator {
+    
+    static final int MAX_ATTEMPTS = 3;
+    
+    static final String TOKEN_VARIABLE = "JAPEX_TOKEN";
+    
+    /**
+     * A fork of a test case executed by a worker.
+     */
+    static abstract class WorkUnit {
+        
+        JapexFork _fork;
+        
+        /**
+         * Runs of the driver into which results are merged, see
+         * {@link JapexFork#run(int[])}.
+         */
+        int[] _runIndices;
+        
+        int _attempts;
+        
+        WorkUnit(JapexFork fork, int[] runIndices) {
+            _fork = fork;
+            _runIndices = runIndices;
+        }
+        
+        /**
+         * Execute the unit on a worker, given the reader and writer of
+         * its connection. Throws an IOException if the worker is lost, 
+         * after discarding any results merged so far.
+         */
+        int run(BufferedReader reader, PrintWriter writer) throws IOException {
+            return _fork.run(_runIndices, reader, writer);
+        }
+        
+        /**
+         * Called once the unit is executed, with the exit code of the 
+         * child JVM, or with -1 if every attempt failed or every worker 
+         * was lost.
+         */
+        abstract void completed(String workerName, int exitCode);
+    }
+    
+    ServerSocket _serverSocket;
+    
+    PrintWriter _outputWriter;
+    
+    LinkedBlockingQueue<WorkUnit> _pendingUnits = new LinkedBlockingQueue<WorkUnit>();
+    
+    /**
+     * Number of units not completed yet, guarded by this.
+     */
+    int _remainingUnits;
+    
+    /**
+     * Number of workers registered and not lost yet, guarded by this.
+     */
+    int _workers;
+    
+    /**
+     * Token that workers must send to register.
+     */
+    String _token;
+    
+    /**
+     * Listen for workers on the given port, or on any free port if 0, of 
+     * the given address, or of the loopback interface if null. Workers 
+     * must send the given token to register.
+     */
+    public JapexCoordinator(String address, int port, String token, 
+        PrintWriter outputWriter) throws IOException 
+    {
+        _serverSocket = new ServerSocket(port, 50, InetAddress.getByName(address));
+        _token = token;
+        _outputWriter = outputWriter;
+    }
+    
+    public int getPort() {
+        return _serverSocket.getLocalPort();
+    }
+    
+    /**
+     * Returns the token shared with workers through the environment 
+     * variable TOKEN_VARIABLE, or a new random token if not set.
+     */
+    static String getToken() {
+        String token = System.getenv(TOKEN_VARIABLE);
+        if (token == null || token.length() == 0) {
+            token = new BigInteger(128, new SecureRandom()).toString(16);
+        }
+        return token;
+    }
+    
+    /**
+     * Execute the given units on the workers connected to this coordinator
+     * and wait until all of them complete.
+     */
+    void execute(List<? extends WorkUnit> units) throws InterruptedException {
+        synchronized (this) {
+            _remainingUnits += units.size();
+        }
+        _pendingUnits.addAll(units);
+        
+        Thread acceptor = new Thread("Japex coordinator") {
+            public void run() {
+                try {
+                    while (true) {
+                        new WorkerHandler(_serverSocket.accept()).start();
+                    }
+                }
+                catch (IOException e) {
+                    // Coordinator has been closed
+                }
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+        
+        synchronized (this) {
+            while (_remainingUnits > 0) {
+                wait();
+            }
+        }
+    }
+    
+    public void close() {
+        try {
+            _serverSocket.close();
+        }
+        catch (IOException e) {
+            // Ignore
+        }
+    }
+    
+    /**
+     * Returns the next unit to execute, waiting for units of lost workers
+     * until all units have completed, in which case returns null.
+     */
+    WorkUnit nextUnit() throws InterruptedException {
+        while (true) {
+            synchronized (this) {
+                if (_remainingUnits == 0) {
+                    return null;
+                }
+            }
+            WorkUnit unit = _pendingUnits.poll(1, TimeUnit.SECONDS);
+            if (unit != null) {
+                return unit;
+            }
+        }
+    }
+    
+    /**
+     * Fail the units not executed yet once every worker has been lost,
+     * rather than waiting for workers that may never come back.
+     */
+    void failPendingUnits() {
+        WorkUnit unit;
+        while ((unit = _pendingUnits.poll()) != null) {
+            completed(unit, "no worker", -1);
+        }
+    }
+    
+    void completed(WorkUnit unit, String workerName, int exitCode) {
+        try {
+            unit.completed(workerName, exitCode);
+        }
+        finally {
+            synchronized (this) {
+                _remainingUnits--;
+                notifyAll();
+            }
+        }
+    }
+    
+    void println(String message) {
+        synchronized (_outputWriter) {
+            _outputWriter.println(message);
+            _outputWriter.flush();
+        }
+    }
+    
+    /**
+     * Sends units to a worker, one at a time, until all units complete
+     * or the worker is lost.
+     */
+    class WorkerHandler extends Thread {
+        
+        Socket _socket;
+        
+        WorkerHandler(Socket socket) {
+            super("Japex worker " + socket.getRemoteSocketAddress());
+            _socket = socket;
+            setDaemon(true);
+        }
+        
+        public void run() {
+            String workerName = _socket.getRemoteSocketAddress().toString();
+            WorkUnit unit = null;
+            boolean registered = false;
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    _socket.getInputStream(), JapexFork.ENCODING));
+                PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                    _socket.getOutputStream(), JapexFork.ENCODING));
+                
+                String line = reader.readLine();
+                if (line == null || !line.startsWith(JapexFork.PREFIX + "worker ")) {
+                    return;
+                }
+                String[] tokens = line.substring(JapexFork.PREFIX.length()).split(" ");
+                if (tokens.length != 3 || !MessageDigest.isEqual(
+                        tokens[2].getBytes(JapexFork.ENCODING), _token.getBytes(JapexFork.ENCODING))) 
+                {
+                    println("  Warning: Rejected worker " + workerName + ": invalid token");
+                    return;
+                }
+                workerName = tokens[1];
+                synchronized (JapexCoordinator.this) {
+                    _workers++;
+                    registered = true;
+                }
+                println("  Worker " + workerName + " registered");
+                
+                while ((unit = nextUnit()) != null) {
+                    unit._attempts++;
+                    int exitCode = unit.run(reader, writer);
+                    WorkUnit completedUnit = unit;
+                    unit = null;
+                    completed(completedUnit, workerName, exitCode);
+                }
+                writer.println(JapexFork.PREFIX + "done");
+                writer.flush();
+            }
+            catch (InterruptedException e) {
+                // Falls through
+            }
+            catch (IOException e) {
+                println("  Warning: Lost worker " + workerName + ": " + e.getMessage());
+            }
+            finally {
+                // Send the unit of a lost worker to another worker
+                if (unit != null) {
+                    if (unit._attempts < MAX_ATTEMPTS) {
+                        _pendingUnits.add(unit);
+                    }
+                    else {
+                        completed(unit, workerName, -1);
+                    }
+                }
+                if (registered) {
+                    boolean lastWorker;
+                    synchronized (JapexCoordinator.this) {
+                        lastWorker = --_workers == 0 && _remainingUnits > 0;
+                    }
+                    if (lastWorker) {
+                        println("  Warning: All workers lost, failing the remaining unit(s)");
+                        failPendingUnits();
+                    }
+                }
+                try {
+                    _socket.close();
+                }
+                catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+}
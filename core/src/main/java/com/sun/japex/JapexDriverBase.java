@@ -38,8 +38,34 @@
     
 package com.sun.japex;
 
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.locks.LockSupport;
+
 public class JapexDriverBase implements JapexDriver, Params {
     
+    /**
+     * Approximate duration in millis of a batch of iterations when 
+     * japex.batchSize is set to 'auto'. Long enough for the cost of 
+     * reading the clock to be negligible, short enough for the run 
+     * phase to end close to its end time.
+     */
+    static final double AUTO_BATCH_TIME = 0.01;
+    
+    /**
+     * When japex.targetRate is set, time in nanos before the intended 
+     * start of an iteration below which a thread spins instead of parking.
+     */
+    static final long SPIN_THRESHOLD = 50000L;
+    
+    /**
+     * When japex.runIterations is set and iterations are not timed, 
+     * progress is published every time the iterations completed so far 
+     * have these bits clear, i.e. every 1024 iterations.
+     */
+    static final long PROGRESS_MASK = 1023L;
+    
     /**
      * Object containing information about this driver. Parameter
      * getters and setters must be delegated to this object.
@@ -56,6 +82,12 @@ public class JapexDriverBase implements JapexDriver, Params {
      */
     protected TestCaseImpl _testCase;
     
+    /**
+     * Snapshot of the params of the current test case and driver, taken
+     * after <code>prepare(TestCase)</code>.
+     */
+    ParamSnapshot _frozenParams;
+    
     /**
      * Flag indicating if warmup phase is completed.
      */
@@ -70,6 +102,72 @@ public class JapexDriverBase implements JapexDriver, Params {
      */
     protected double _endTime;
     
+    /**
+     * Fraction of a warmup window that may be spent in JIT compilation 
+     * for compilation activity to be considered quiet in adaptive mode.
+     */
+    static final double JIT_QUIET_FRACTION = 0.01;
+    
+    /**
+     * Histogram of the latencies of each call to <code>run(TestCase)</code>
+     * during the last run phase. Only used when japex.latencyHistogram 
+     * is set; allocated once and reused for every test case.
+     */
+    protected LatencyHistogram _latencyHistogram;
+    
+    /**
+     * Histogram of the latencies of each call to <code>run(TestCase)</code>
+     * measured from its intended start time when japex.targetRate is set.
+     * Unlike <code>_latencyHistogram</code>, it includes the time a call 
+     * was delayed by earlier calls that took longer than scheduled.
+     */
+    protected LatencyHistogram _correctedHistogram;
+    
+    /**
+     * Per-thread accumulators owned by the engine and the index of the
+     * slot used by this driver instance.
+     */
+    ThreadResults _threadResults;
+    int _threadIndex;
+    
+    /**
+     * Barrier used by the engine to start all threads of a phase at the
+     * same time, or <code>null</code> if this instance runs on the 
+     * engine's own thread.
+     */
+    StartBarrier _startBarrier;
+    
+    /**
+     * Number of iterations and duration of the last warmup phase executed
+     * by this instance. Used to compute the batch size in 'auto' mode.
+     */
+    long _lastWarmupIterations;
+    double _lastWarmupTime;
+    
+    /**
+     * Sinks used by the <code>consume()</code> methods. Each pair holds
+     * two different values, so a consumed value can never be equal to
+     * both; because they are volatile the JIT must still compare it,
+     * and therefore compute it.
+     */
+    private volatile boolean _booleanSink1 = false, _booleanSink2 = true;
+    private volatile byte _byteSink1 = 1, _byteSink2 = 2;
+    private volatile char _charSink1 = 'a', _charSink2 = 'b';
+    private volatile short _shortSink1 = 1, _shortSink2 = 2;
+    private volatile int _intSink1 = 1, _intSink2 = 2;
+    private volatile long _longSink1 = 1L, _longSink2 = 2L;
+    private volatile float _floatSink1 = 1.0f, _floatSink2 = 2.0f;
+    private volatile double _doubleSink1 = 1.0, _doubleSink2 = 2.0;
+    
+    /**
+     * Objects are only published occasionally, at exponentially 
+     * decreasing intervals driven by a cheap pseudo-random sequence,
+     * through a weak reference that does not keep them alive.
+     */
+    private int _objectSeed = (int) System.nanoTime();
+    private int _objectMask = 1;
+    private volatile WeakReference<Object> _objectSink;
+    
     public JapexDriverBase() {
     }
     
@@ -94,6 +192,44 @@ public class JapexDriverBase implements JapexDriver, Params {
         _endTime = endTime;
     }
     
+    void setThreadResults(ThreadResults threadResults, int threadIndex) {
+        _threadResults = threadResults;
+        _threadIndex = threadIndex;
+    }
+    
+    void setStartBarrier(StartBarrier startBarrier) {
+        _startBarrier = startBarrier;
+    }
+    
+    /**
+     * Accumulate the number of iterations and the duration (in millis) 
+     * of the current warmup or run phase. Results are kept in a slot 
+     * owned by this thread and merged by the engine after all threads 
+     * have completed the phase, so no synchronization is needed.
+     */
+    protected void accumulateResult(long iterations, double duration) {
+        _threadResults.accumulate(_threadIndex, iterations, duration);
+    }
+    
+    /**
+     * Returns an immutable snapshot of the params of the current test case,
+     * falling back to those of the driver, taken after 
+     * <code>prepare(TestCase)</code>. Reading params through this snapshot
+     * using a {@link ParamKey} avoids synchronizing on the driver shared
+     * by all threads, and should be preferred in <code>run()</code>.
+     */
+    protected ParamSnapshot getFrozenParams() {
+        return _frozenParams;
+    }
+    
+    public LatencyHistogram getLatencyHistogram() {
+        return _latencyHistogram;
+    }
+    
+    public LatencyHistogram getCorrectedHistogram() {
+        return _correctedHistogram;
+    }
+    
     // -- Internal interface ---------------------------------------------
     
     /**
@@ -113,13 +249,17 @@ public class JapexDriverBase implements JapexDriver, Params {
         prepare(tc);
         tc.setDoubleParam(Constants.ACTUAL_PREPARE_TIME, 
             Util.currentTimeMillis() - millis);
+        
+        _frozenParams = ParamSnapshot.freeze(tc, 
+            (_driver instanceof ParamsImpl) ? (ParamsImpl) _driver : null);
     }
     
     /**
      * Execute the warmup phase. This method can be executed concurrently
      * by multiple threads. Care should be taken to ensure proper
      * synchronization. Note that parameter getters and setters are
-     * already synchronized.
+     * already synchronized, and that results are accumulated per thread
+     * using <code>accumulateResult()</code>.
      */
     public void warmup() {
         if (Japex.verbose) {
@@ -132,7 +272,12 @@ public class JapexDriverBase implements JapexDriver, Params {
         long warmupIterations = 0;
         double millis, startTime, duration;         
         
-        if (tc.hasParam(Constants.WARMUP_TIME)) {
+        if (isAdaptiveWarmup(tc)) {
+            startTime = Util.currentTimeMillis();
+            warmupIterations = warmupAdaptive(tc, startTime);
+            duration = Util.currentTimeMillis() - startTime;
+        }
+        else if (tc.hasParam(Constants.WARMUP_TIME)) {
             startTime = millis = Util.currentTimeMillis();
 
             while (_endTime > millis) {
@@ -155,18 +300,9 @@ public class JapexDriverBase implements JapexDriver, Params {
         }
         
         // Accumulate number of iterations and duration
-        synchronized (tc) {
-            long warmupIterationsSum =  
-                tc.hasParam(Constants.WARMUP_ITERATIONS_SUM) ? 
-                    tc.getLongParam(Constants.WARMUP_ITERATIONS_SUM) : 0L;
-            tc.setLongParam(Constants.WARMUP_ITERATIONS_SUM, 
-                            warmupIterationsSum + warmupIterations);
-            double warmupTimeSum =
-                tc.hasParam(Constants.WARMUP_TIME_SUM) ?
-                    tc.getDoubleParam(Constants.WARMUP_TIME_SUM) : 0L;
-            tc.setDoubleParam(Constants.WARMUP_TIME_SUM,
-                            warmupTimeSum + duration);
-        }        
+        accumulateResult(warmupIterations, duration);
+        _lastWarmupIterations = warmupIterations;
+        _lastWarmupTime = duration;
         
         if (Japex.verbose) {
             System.out.println("               " + 
@@ -178,11 +314,115 @@ public class JapexDriverBase implements JapexDriver, Params {
         }            
     }
     
+    static boolean isAdaptiveWarmup(TestCaseImpl tc) {
+        if (!tc.hasParam(Constants.WARMUP_MODE)) {
+            return false;
+        }
+        String mode = tc.getParam(Constants.WARMUP_MODE);
+        if (mode.equalsIgnoreCase("adaptive")) {
+            return true;
+        }
+        if (mode.equalsIgnoreCase("fixed")) {
+            return false;
+        }
+        throw new RuntimeException("Parameter 'japex.warmupMode' must be " 
+            + "set to either 'fixed' or 'adaptive'");
+    }
+    
+    /**
+     * Execute the warmup phase in intervals of japex.warmupInterval 
+     * millis, sampling the throughput of each interval. Warmup ends 
+     * once the throughputs of the last japex.warmupWindow intervals have
+     * a coefficient of variation below japex.warmupMaxCv and the JIT 
+     * has been quiet during those intervals, but never before 
+     * japex.warmupMinTime or after japex.warmupMaxTime. The reason 
+     * warmup ended is stored in japex.warmupEndReason. Returns the 
+     * number of iterations executed.
+     */
+    private long warmupAdaptive(TestCaseImpl tc, double startTime) {
+        double interval = Double.parseDouble(getParamOrDefault(tc,
+            Constants.WARMUP_INTERVAL, Constants.DEFAULT_WARMUP_INTERVAL));
+        int window = Integer.parseInt(getParamOrDefault(tc,
+            Constants.WARMUP_WINDOW, Constants.DEFAULT_WARMUP_WINDOW));
+        double maxCv = Double.parseDouble(getParamOrDefault(tc,
+            Constants.WARMUP_MAX_CV, Constants.DEFAULT_WARMUP_MAX_CV));
+        double minEndTime = startTime + Util.parseDuration(getParamOrDefault(tc,
+            Constants.WARMUP_MIN_TIME, Constants.DEFAULT_WARMUP_MIN_TIME));
+        double maxEndTime = startTime + Util.parseDuration(getParamOrDefault(tc,
+            Constants.WARMUP_MAX_TIME, Constants.DEFAULT_WARMUP_MAX_TIME));
+        if (interval <= 0.0 || window < 2) {
+            throw new RuntimeException("Parameter 'japex.warmupInterval' must be " 
+                + "positive and 'japex.warmupWindow' at least 2");
+        }
+        
+        // JIT activity is ignored if compilation time is not available
+        CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+        if (compilation != null && !compilation.isCompilationTimeMonitoringSupported()) {
+            compilation = null;
+        }
+        long compilationTime = compilation != null ? 
+            compilation.getTotalCompilationTime() : 0L;
+        
+        // Sliding windows of throughputs, durations and compilation times
+        double[] throughputs = new double[window];
+        double[] durations = new double[window];
+        double[] compilationTimes = new double[window];
+        
+        boolean steadyState = false;
+        long iterations = 0;
+        double millis = startTime;
+        for (int samples = 1; ; samples++) {
+            double intervalStartTime = millis;
+            double intervalEndTime = Math.min(intervalStartTime + interval, maxEndTime);
+            long intervalIterations = 0;
+            do {
+                warmup(tc);      // Call warmup
+                intervalIterations++;
+                millis = Util.currentTimeMillis();
+            } while (intervalEndTime > millis);
+            iterations += intervalIterations;
+            
+            int slot = samples % window;
+            durations[slot] = millis - intervalStartTime;
+            throughputs[slot] = intervalIterations / durations[slot];
+            if (compilation != null) {
+                long time = compilation.getTotalCompilationTime();
+                compilationTimes[slot] = time - compilationTime;
+                compilationTime = time;
+            }
+            
+            if (millis >= maxEndTime) {
+                break;
+            }
+            if (samples >= window && millis >= minEndTime
+                && Util.standardDev(throughputs) * Math.sqrt(window / (window - 1.0)) 
+                       <= maxCv * Util.arithmeticMean(throughputs)
+                && Util.arithmeticMean(compilationTimes) <= 
+                       JIT_QUIET_FRACTION * Util.arithmeticMean(durations)) 
+            {
+                steadyState = true;
+                break;
+            }
+        }
+        
+        // Merged by the engine into japex.warmupEndReason after the phase
+        _threadResults.setLong(_threadIndex, ThreadResults.STEADY_STATE, 
+            steadyState ? 1L : 0L);
+        return iterations;
+    }
+    
+    private static String getParamOrDefault(TestCaseImpl tc, String name, 
+        String defaultValue) 
+    {
+        return tc.hasParam(name) ? tc.getParam(name) : defaultValue;
+    }
+    
     /**
      * Execute the run phase. This method can be executed concurrently
      * by multiple threads. Care should be taken to ensure proper
      * synchronization. Note that parameter getters and setters are
-     * already synchronized.
+     * already synchronized, and that results are accumulated per thread
+     * using <code>accumulateResult()</code>.
      */
     public void run() {
         if (Japex.verbose) {
@@ -199,7 +439,45 @@ public class JapexDriverBase implements JapexDriver, Params {
         long runIterationDelay = tc.hasParam(Constants.RUN_ITERATION_DELAY) ?
             tc.getLongParam(Constants.RUN_ITERATION_DELAY) : 0L;
         
-        if (tc.hasParam(Constants.RUN_TIME)) {
+        // Open-loop mode if japex.targetRate is set
+        boolean openLoop = tc.hasParam(Constants.TARGET_RATE);
+        if (openLoop && runIterationDelay > 0) {
+            throw new RuntimeException("Parameters 'japex.targetRate' and " 
+                + "'japex.runIterationDelay' cannot be used together");
+        }
+        
+        // Initialize histogram if latency of each iteration is recorded
+        LatencyHistogram histogram = null;
+        if (openLoop || tc.hasParam(Constants.LATENCY_HISTOGRAM) && 
+                tc.getBooleanParam(Constants.LATENCY_HISTOGRAM)) 
+        {
+            if (_latencyHistogram == null) {
+                _latencyHistogram = new LatencyHistogram();
+            }
+            else {
+                _latencyHistogram.reset();
+            }
+            histogram = _latencyHistogram;
+        }
+        
+        // Number of calls to run() between clock reads, always 1 if the
+        // latency of each call is recorded in a histogram
+        long batchSize = (runIterationDelay > 0 || histogram != null) ? 
+            1L : getBatchSize(tc);
+        _threadResults.setLong(_threadIndex, ThreadResults.BATCH_SIZE, batchSize);
+        
+        // Bytes allocated and CPU time used by this thread so far, or -1 
+        // if not supported
+        long allocatedBytes = Util.getThreadAllocatedBytes();
+        long cpuTime = Util.getThreadCpuTime();
+        long userTime = Util.getThreadUserTime();
+        
+        if (openLoop) {
+            startTime = Util.currentTimeMillis();
+            runIterations = runOpenLoop(tc);
+            duration = Util.currentTimeMillis() - startTime;
+        }
+        else if (tc.hasParam(Constants.RUN_TIME)) {
             startTime = Util.currentTimeMillis();
             
             // Run phase
@@ -219,12 +497,24 @@ public class JapexDriverBase implements JapexDriver, Params {
                     }
                 }
                 
-                // Call run() in driver and get current time
-                run(tc);
-                millis = Util.currentTimeMillis();
+                // Call run() in driver batchSize times and get current time
+                if (histogram != null) {
+                    long nanos = Util.currentTimeNanos();
+                    run(tc);
+                    long now = Util.currentTimeNanos();
+                    histogram.recordValue(now - nanos);
+                    millis = Util.nanosToMillis(now);
+                }
+                else {
+                    for (long i = 0; i < batchSize; i++) {
+                        run(tc);
+                    }
+                    millis = Util.currentTimeMillis();
+                }
                 
                 // Update iterations and calculate delayed end time
-                runIterations++;
+                runIterations += batchSize;
+                _threadResults.setLong(_threadIndex, ThreadResults.PROGRESS, runIterations);
                 delayedEndTime = _endTime + runIterations * runIterationDelay;
             } while (delayedEndTime >= millis);
             
@@ -236,7 +526,7 @@ public class JapexDriverBase implements JapexDriver, Params {
 
             // Run phase
             startTime = Util.currentTimeMillis();
-            for (long i = 0; i < runIterations; i++) {
+            for (long i = 0; i < runIterations; ) {
                 // Sleep for japex.runIterationDelay
                 if (runIterationDelay > 0) {
                     try {
@@ -252,28 +542,46 @@ public class JapexDriverBase implements JapexDriver, Params {
                     }
                 }
                 
-                // Call run() in driver
-                run(tc);
+                // Call run() in driver, timing each call if using a histogram
+                if (histogram != null) {
+                    long nanos = Util.currentTimeNanos();
+                    run(tc);
+                    histogram.recordValue(Util.currentTimeNanos() - nanos);
+                    i++;
+                    _threadResults.setLong(_threadIndex, ThreadResults.PROGRESS, i);
+                }
+                else {
+                    run(tc);
+                    i++;
+                    
+                    // Publish progress without a store on every iteration
+                    if ((i & PROGRESS_MASK) == 0L) {
+                        _threadResults.setLong(_threadIndex, ThreadResults.PROGRESS, i);
+                    }
+                }
             }
+            _threadResults.setLong(_threadIndex, ThreadResults.PROGRESS, runIterations);
             
             // Calculate duration excluding delayed time
             duration = Util.currentTimeMillis() - startTime 
                 - runIterations * runIterationDelay;            
         }
         
+        // Record bytes allocated and CPU time used during the run phase
+        if (cpuTime >= 0L) {
+            cpuTime = Util.getThreadCpuTime() - cpuTime;
+            userTime = Util.getThreadUserTime() - userTime;
+        }
+        if (allocatedBytes >= 0L) {
+            allocatedBytes = Util.getThreadAllocatedBytes() - allocatedBytes;
+        }
+        _threadResults.setLong(_threadIndex, ThreadResults.ALLOCATED_BYTES, 
+            allocatedBytes);
+        _threadResults.setLong(_threadIndex, ThreadResults.CPU_TIME, cpuTime);
+        _threadResults.setLong(_threadIndex, ThreadResults.USER_TIME, userTime);
+        
         // Accumulate number of iterations and duration
-        synchronized (tc) {
-            long runIterationsSum =  
-                tc.hasParam(Constants.RUN_ITERATIONS_SUM) ? 
-                    tc.getLongParam(Constants.RUN_ITERATIONS_SUM) : 0L;
-            tc.setLongParam(Constants.RUN_ITERATIONS_SUM, 
-                            runIterationsSum + runIterations);
-            double runTimeSum =
-                tc.hasParam(Constants.RUN_TIME_SUM) ?
-                    tc.getDoubleParam(Constants.RUN_TIME_SUM) : 0L;
-            tc.setDoubleParam(Constants.RUN_TIME_SUM,
-                            runTimeSum + duration);
-        }        
+        accumulateResult(runIterations, duration);
         
         if (Japex.verbose) {
             System.out.println("               " + 
@@ -285,6 +593,112 @@ public class JapexDriverBase implements JapexDriver, Params {
         }            
     }
         
+    /**
+     * Execute the run phase at the constant arrival rate given by 
+     * japex.targetRate, shared by all threads. Each thread schedules the
+     * intended start time of every call to <code>run(TestCase)</code>
+     * independently of when earlier calls completed, and records both
+     * the service time of each call and its latency measured from the 
+     * intended start. Calls are scheduled until japex.runTime elapses or
+     * japex.runIterations calls have been made. If calls cannot keep up
+     * with the target rate, no call is issued once japex.runTime has 
+     * elapsed; calls scheduled but never issued are recorded in the 
+     * corrected histogram with their latency so far. Returns the number
+     * of calls made.
+     */
+    long runOpenLoop(TestCaseImpl tc) {
+        // Interval between calls in this thread, staggered across threads,
+        // must be at least one nanosecond for intended starts to advance
+        int nOfThreads = _threadResults.getNumberOfThreads();
+        double targetRate = tc.getDoubleParam(Constants.TARGET_RATE);
+        long period = (long) (Util.millisToNanos(1000L) * nOfThreads / targetRate);
+        if (!(targetRate > 0.0) || period < 1L) {
+            throw new JapexException("Parameter 'japex.targetRate' of value '" 
+                + tc.getParam(Constants.TARGET_RATE) + "' must be greater than 0" 
+                + " and at most " + Util.millisToNanos(1000L) * nOfThreads 
+                + " calls per second with " + nOfThreads + " thread(s)");
+        }
+        
+        if (_correctedHistogram == null) {
+            _correctedHistogram = new LatencyHistogram();
+        }
+        else {
+            _correctedHistogram.reset();
+        }
+        
+        long intendedStart = Util.currentTimeNanos() 
+            + _threadIndex * period / nOfThreads;
+        
+        boolean timed = tc.hasParam(Constants.RUN_TIME);
+        long endNanos = (long) (_endTime * 1000000.0);
+        long runIterations = timed ? Long.MAX_VALUE 
+            : tc.getLongParam(Constants.RUN_ITERATIONS);
+        
+        long i = 0;
+        for (; i < runIterations; i++) {
+            // Stop at the end time even if calls are behind schedule
+            long nanos = Util.currentTimeNanos();
+            if (timed && (intendedStart > endNanos || nanos > endNanos)) {
+                break;
+            }
+            
+            // Wait until intended start, parking if far enough ahead
+            while (nanos < intendedStart) {
+                long wait = intendedStart - nanos;
+                if (wait > SPIN_THRESHOLD) {
+                    LockSupport.parkNanos(wait - SPIN_THRESHOLD);
+                }
+                nanos = Util.currentTimeNanos();
+            }
+            
+            run(tc);
+            
+            long now = Util.currentTimeNanos();
+            _latencyHistogram.recordValue(now - nanos);
+            _correctedHistogram.recordValue(now - intendedStart);
+            intendedStart += period;
+            _threadResults.setLong(_threadIndex, ThreadResults.PROGRESS, i + 1);
+        }
+        
+        // Calls missed before the end time still count as delayed
+        if (timed) {
+            long now = Util.currentTimeNanos();
+            while (intendedStart <= endNanos) {
+                _correctedHistogram.recordValue(now - intendedStart);
+                intendedStart += period;
+            }
+        }
+        return i;
+    }
+    
+    /**
+     * Returns the number of calls to <code>run(TestCase)</code> between
+     * two reads of the clock as specified by japex.batchSize. In 'auto'
+     * mode, the batch size is derived from the cost of an iteration 
+     * during the last warmup phase, so that a batch takes about 
+     * <code>AUTO_BATCH_TIME</code> millis.
+     */
+    long getBatchSize(TestCaseImpl tc) {
+        if (!tc.hasParam(Constants.BATCH_SIZE)) {
+            return 1L;
+        }
+        
+        if (tc.getParam(Constants.BATCH_SIZE).equalsIgnoreCase("auto")) {
+            if (_lastWarmupIterations == 0 || !(_lastWarmupTime > 0.0)) {
+                return 1L;
+            }
+            double iterationTime = _lastWarmupTime / _lastWarmupIterations;
+            return Math.max(1L, (long) (AUTO_BATCH_TIME / iterationTime));
+        }
+        
+        long batchSize = tc.getLongParam(Constants.BATCH_SIZE);
+        if (batchSize < 1) {
+            throw new RuntimeException(
+                "Parameter 'japex.batchSize' must be at least 1 or 'auto'");
+        }
+        return batchSize;
+    }
+    
     /**
      * Called exactly once after calling run. 
      */
@@ -307,17 +721,95 @@ public class JapexDriverBase implements JapexDriver, Params {
      * that parameter getters and setters are already synchronized.
      */
     public Object call() {
-        if (_needWarmup) {
-            warmup(); 
-            _needWarmup = false;
+        StartBarrier startBarrier = _startBarrier;
+        if (startBarrier != null) {
+            startBarrier.await(_threadIndex);
         }
-        else {
-            run();
-            _needWarmup = true;
+        try {
+            if (_needWarmup) {
+                warmup(); 
+                _needWarmup = false;
+            }
+            else {
+                run();
+                _needWarmup = true;
+            }
+        }
+        finally {
+            // Record the end of this thread even if the phase failed
+            if (startBarrier != null) {
+                startBarrier.finish(_threadIndex);
+            }
         }
         return null;
     }    
     
+    // -- Blackhole ------------------------------------------------------
+    
+    /**
+     * Consume a value computed by a driver so that the JIT cannot treat
+     * the code computing it as dead and eliminate it. Drivers should
+     * pass any result they would otherwise ignore, such as the values
+     * returned by the getters being measured. Each call costs only a 
+     * few nanoseconds.
+     */
+    public final void consume(Object o) {
+        int seed = _objectSeed * 1664525 + 1013904223;
+        _objectSeed = seed;
+        if ((seed & _objectMask) == 0) {
+            _objectSink = new WeakReference<Object>(o);
+            _objectMask = (_objectMask << 1) + 1;
+        }
+    }
+    
+    public final void consume(boolean b) {
+        if (b == _booleanSink1 & b == _booleanSink2) {
+            throw new IllegalStateException("Blackhole sinks must differ");
+        }
+    }
+    
+    public final void consume(byte b) {
+        if (b == _byteSink1 & b == _byteSink2) {
+            throw new IllegalStateException("Blackhole sinks must differ");
+        }
+    }
+    
+    public final void consume(char c) {
+        if (c == _charSink1 & c == _charSink2) {
+            throw new IllegalStateException("Blackhole sinks must differ");
+        }
+    }
+    
+    public final void consume(short s) {
+        if (s == _shortSink1 & s == _shortSink2) {
+            throw new IllegalStateException("Blackhole sinks must differ");
+        }
+    }
+    
+    public final void consume(int i) {
+        if (i == _intSink1 & i == _intSink2) {
+            throw new IllegalStateException("Blackhole sinks must differ");
+        }
+    }
+    
+    public final void consume(long l) {
+        if (l == _longSink1 & l == _longSink2) {
+            throw new IllegalStateException("Blackhole sinks must differ");
+        }
+    }
+    
+    public final void consume(float f) {
+        if (f == _floatSink1 & f == _floatSink2) {
+            throw new IllegalStateException("Blackhole sinks must differ");
+        }
+    }
+    
+    public final void consume(double d) {
+        if (d == _doubleSink1 & d == _doubleSink2) {
+            throw new IllegalStateException("Blackhole sinks must differ");
+        }
+    }
+    
     // -- Params interface -----------------------------------------------
     
     public boolean hasParam(String name) {
@@ -0,0 +1,114 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+/**
+ * Management interface exposing the progress of a running Japex engine,
+ * registered in the platform MBean server under the name
+ * <code>com.sun.japex:type=Engine</code> while a test suite executes.
+ * Throughputs are in iterations per second, summed over all threads,
+ * and times are in seconds. When drivers are executed in parallel, the
+ * driver, test case and phase of each of them are reported separated by
+ * commas.
+ */
+public interface JapexEngineMXBean {
+    
+    /**
+     * Returns the name of the driver being executed.
+     */
+    public String getDriver();
+    
+    /**
+     * Returns the current run of the driver, starting at 1 and 
+     * including warmup runs. When drivers are executed in parallel, 
+     * returns the lowest current run among them.
+     */
+    public int getRun();
+    
+    /**
+     * Returns the name of the test case being executed.
+     */
+    public String getTestCase();
+    
+    /**
+     * Returns the current phase: prepare, warmup, run, finish or idle.
+     */
+    public String getPhase();
+    
+    /**
+     * Returns the number of iterations completed so far in the run 
+     * phase. With japex.runTime, each thread reports its progress after
+     * every batch of calls. With japex.runIterations, it does so every 
+     * 1024 iterations, or after every iteration if a latency histogram 
+     * is used, since japex.batchSize does not apply in that mode. Not 
+     * available, and always 0, for drivers executed in child JVMs, i.e. 
+     * with japex.forks, japex.parallelDrivers or on workers; the same 
+     * applies to the throughputs.
+     */
+    public long getIterations();
+    
+    /**
+     * Returns the throughput over the last second of the run phase.
+     */
+    public double getInstantaneousThroughput();
+    
+    /**
+     * Returns the throughput since the start of the run phase.
+     */
+    public double getRunningThroughput();
+    
+    public int getCompletedTestCases();
+    
+    /**
+     * Returns the number of test cases to execute, counting every run
+     * of every driver. Grows if runs are added to reach 
+     * japex.targetRelativeError.
+     */
+    public int getTotalTestCases();
+    
+    public long getElapsedTime();
+    
+    /**
+     * Returns an estimate of the remaining time based on the average 
+     * time taken by the test cases completed so far, or on japex.warmupTime
+     * and japex.runTime before any has completed. Returns -1 if no
+     * estimate is available.
+     */
+    public long getEstimatedTimeRemaining();
+}
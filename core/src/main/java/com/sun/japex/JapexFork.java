@@ -0,0 +1,576 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.*;
+
+/**
+ * Runs a driver in a child JVM when japex.forks is set. The parent 
+ * launches the child using this class' <code>main()</code>, passing the
+ * name of the driver and the config files. The child loads the test
+ * suite, executes the driver as usual and writes the resulting params 
+ * to its standard output using the following line protocol:
+ *
+ * <pre>
+ * @japex testCase &lt;run&gt; &lt;index&gt; name=value&amp;...
+ * @japex driver name=value&amp;...
+ * @japex environment name=value&amp;...
+ * @japex end
+ * </pre>
+ *
+ * where names and values are URL-encoded. Any other output from the
+ * child, including that of the engine and the driver, is written to 
+ * its standard error which is copied to the parent's output writer.
+ * If a CPU set is given, the child is launched with <code>taskset</code>
+ * so that it only runs on those CPUs. If a test case is given, the 
+ * child only executes that test case of the driver.
+ * <p>
+ * The child can also be launched by a {@link JapexWorker} on another
+ * host, in which case the same lines are relayed by the worker.
+ */
+public class JapexFork {
+    
+    static final String PREFIX = "@japex ";
+    static final String ENCODING = "UTF-8";
+    
+    /**
+     * Global params sent by the child describing the environment in 
+     * which the driver was executed.
+     */
+    static final String[] ENVIRONMENT_PARAMS = {
+        Constants.HOST_NAME, Constants.OS_NAME, Constants.OS_ARCHITECTURE, 
+        Constants.VM_INFO
+    };
+    
+    /**
+     * Driver in the parent JVM into which results are merged.
+     */
+    DriverImpl _driverImpl;
+    
+    /**
+     * Config files from which the test suite is loaded by the child.
+     */
+    List<String> _configFiles;
+    
+    PrintWriter _outputWriter;
+    
+    /**
+     * Report directory of the parent, in which the child writes any 
+     * files linked from the report.
+     */
+    File _reportDirectory;
+    
+    /**
+     * CPUs to which the child is pinned, in the list format accepted by
+     * <code>taskset -c</code>, or null to run it on any CPU.
+     */
+    String _cpuSet;
+    
+    /**
+     * Harness overhead measured by the parent, passed to the child so 
+     * that it is not measured again, or null if not measured.
+     */
+    String _calibration;
+    
+    /**
+     * Name of the only test case executed by the child, or null to 
+     * execute all test cases of the driver.
+     */
+    String _testCase;
+    
+    /**
+     * True if the child sent all its results.
+     */
+    boolean _completed;
+    
+    public JapexFork(DriverImpl driverImpl, List<String> configFiles, 
+        PrintWriter outputWriter) 
+    {
+        _driverImpl = driverImpl;
+        _configFiles = configFiles;
+        _outputWriter = outputWriter;
+    }
+    
+    public void setReportDirectory(File reportDirectory) {
+        _reportDirectory = reportDirectory;
+    }
+    
+    public void setCpuSet(String cpuSet) {
+        _cpuSet = cpuSet;
+    }
+    
+    public void setCalibration(long timerResolution, double timerLatency, 
+        double loopOverhead) 
+    {
+        _calibration = timerResolution + "," + timerLatency + "," + loopOverhead;
+    }
+    
+    public void setTestCase(String testCase) {
+        _testCase = testCase;
+    }
+    
+    public DriverImpl getDriver() {
+        return _driverImpl;
+    }
+    
+    public String getTestCase() {
+        return _testCase;
+    }
+    
+    /**
+     * Returns true if child JVMs can be pinned to a CPU set, i.e. if 
+     * running on Linux and <code>taskset</code> is found in the path.
+     */
+    public static boolean isCpuPinningSupported() {
+        if (!System.getProperty("os.name").startsWith("Linux")) {
+            return false;
+        }
+        String path = System.getenv("PATH");
+        if (path != null) {
+            StringTokenizer tokenizer = new StringTokenizer(path, File.pathSeparator);
+            while (tokenizer.hasMoreTokens()) {
+                if (new File(tokenizer.nextToken(), "taskset").isFile()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Launch a child JVM to execute the driver and wait for it to 
+     * complete. The test cases of the child's run <code>i</code> are
+     * merged into the driver's run <code>runIndices[i]</code>, or 
+     * discarded if that value is negative. Returns the exit code of the 
+     * child, or 1 if the child terminated without sending all results.
+     */
+    public int run(int[] runIndices) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(getCommand()).start();
+        process.getOutputStream().close();
+        
+        Thread pump = new StreamPump(process.getErrorStream(), _outputWriter);
+        pump.start();
+        
+        BufferedReader reader = new BufferedReader(
+            new InputStreamReader(process.getInputStream(), ENCODING));
+        readResults(reader, runIndices, false);
+        reader.close();
+        
+        int exitCode = process.waitFor();
+        pump.join();
+        return (exitCode == 0 && !_completed) ? 1 : exitCode;
+    }
+    
+    /**
+     * Execute the driver in a child JVM launched by a worker, given the
+     * reader and writer of its connection to the coordinator. Results 
+     * are merged as in {@link #run(int[])}, and the environment of the 
+     * worker, such as its host name, is set in every test case executed.
+     * Throws an IOException if the connection to the worker is lost, in
+     * which case any results merged so far are discarded so that the 
+     * unit can be executed again.
+     */
+    public int run(int[] runIndices, BufferedReader reader, PrintWriter writer) 
+        throws IOException 
+    {
+        // Save the test cases the child merges into, other units may be
+        // merging into other test cases of the same runs
+        Map<TestCaseImpl, Map<String, Object>> saved = 
+            new HashMap<TestCaseImpl, Map<String, Object>>();
+        for (int r = 0; r < runIndices.length; r++) {
+            if (runIndices[r] >= 0) {
+                for (TestCaseImpl tc : _driverImpl.getTestCases(runIndices[r])) {
+                    if (_testCase == null || tc.getName().equals(_testCase)) {
+                        saved.put(tc, tc.saveParams());
+                    }
+                }
+            }
+        }
+        
+        Integer exitCode = null;
+        try {
+            writer.println(PREFIX + "jvmArgs " + encodeList(getJvmArguments()));
+            writer.println(PREFIX + "run " + encodeList(getArguments()));
+            writer.flush();
+            
+            exitCode = readResults(reader, runIndices, true);
+            if (exitCode == null) {
+                throw new IOException("Connection to worker closed");
+            }
+        }
+        finally {
+            // Discard partial results if the worker was lost
+            if (exitCode == null) {
+                for (Map.Entry<TestCaseImpl, Map<String, Object>> e : saved.entrySet()) {
+                    e.getKey().restoreParams(e.getValue());
+                }
+            }
+        }
+        return (exitCode == 0 && !_completed) ? 1 : exitCode;
+    }
+    
+    /**
+     * Read the lines sent by the child, merging its results and copying
+     * any other line to the output writer, until the end of the stream 
+     * or until a worker sends the exit code of the child. Returns that
+     * exit code, or null if the stream ended.
+     */
+    Integer readResults(BufferedReader reader, int[] runIndices, boolean remote) 
+        throws IOException 
+    {
+        _completed = false;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.startsWith(PREFIX)) {
+                _outputWriter.println(line);
+                continue;
+            }
+            
+            String[] tokens = line.substring(PREFIX.length()).split(" ");
+            if (tokens[0].equals("testCase")) {
+                int run = Integer.parseInt(tokens[1]);
+                int index = Integer.parseInt(tokens[2]);
+                if (run < runIndices.length && runIndices[run] >= 0) {
+                    decodeParams(tokens.length > 3 ? tokens[3] : "", 
+                        getTestCase(runIndices[run], index));
+                }
+            }
+            else if (tokens[0].equals("driver")) {
+                // Driver params of a single test case do not apply to the driver
+                if (_testCase == null) {
+                    decodeParams(tokens.length > 1 ? tokens[1] : "", _driverImpl);
+                }
+            }
+            else if (tokens[0].equals("environment")) {
+                if (remote) {
+                    for (int r = 0; r < runIndices.length; r++) {
+                        if (runIndices[r] < 0) {
+                            continue;
+                        }
+                        for (TestCaseImpl tc : _driverImpl.getTestCases(runIndices[r])) {
+                            if (_testCase == null || tc.getName().equals(_testCase)) {
+                                decodeParams(tokens.length > 1 ? tokens[1] : "", tc);
+                            }
+                        }
+                    }
+                }
+            }
+            else if (tokens[0].equals("end")) {
+                _completed = true;
+            }
+            else if (tokens[0].equals("exit")) {
+                return Integer.valueOf(tokens[1]);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Returns the test case of the driver's run into which the test case
+     * at the given index of the child's run is merged.
+     */
+    private TestCaseImpl getTestCase(int run, int index) {
+        List<TestCaseImpl> testCases = _driverImpl.getTestCases(run);
+        if (_testCase != null) {
+            for (TestCaseImpl tc : testCases) {
+                if (tc.getName().equals(_testCase)) {
+                    return tc;
+                }
+            }
+        }
+        return testCases.get(index);
+    }
+    
+    /**
+     * Build the command line of the child JVM.
+     */
+    List<String> getCommand() {
+        List<String> command = new ArrayList<String>();
+        if (_cpuSet != null) {
+            command.add("taskset");
+            command.add("-c");
+            command.add(_cpuSet);
+        }
+        command.addAll(getCommand(getJvmArguments(), getArguments()));
+        return command;
+    }
+    
+    /**
+     * Build the command line of a child JVM using the Java installation
+     * and class path of this JVM, as done by the parent and by workers.
+     */
+    static List<String> getCommand(List<String> jvmArguments, 
+        List<String> arguments) 
+    {
+        String fileSep = System.getProperty("file.separator");
+        
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + fileSep + "bin" 
+            + fileSep + "java");
+        command.addAll(jvmArguments);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(JapexFork.class.getName());
+        command.addAll(arguments);
+        return command;
+    }
+    
+    /**
+     * Returns the JVM arguments of the child. System properties defined
+     * on the command line of this JVM are propagated, as they may be 
+     * referenced by config files, followed by japex.jvmArgs.
+     */
+    List<String> getJvmArguments() {
+        List<String> arguments = new ArrayList<String>();
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (arg.startsWith("-D")) {
+                arguments.add(arg);
+            }
+        }
+        if (_driverImpl.hasParam(Constants.JVM_ARGS)) {
+            StringTokenizer tokenizer = 
+                new StringTokenizer(_driverImpl.getParam(Constants.JVM_ARGS));
+            while (tokenizer.hasMoreTokens()) {
+                arguments.add(tokenizer.nextToken());
+            }
+        }
+        return arguments;
+    }
+    
+    /**
+     * Returns the arguments passed to the <code>main()</code> of the child.
+     */
+    List<String> getArguments() {
+        List<String> command = new ArrayList<String>();
+        if (Japex.verbose) {
+            command.add("-verbose");
+        }
+        if (Japex.silent) {
+            command.add("-silent");
+        }
+        if (Japex.resultPerLine) {
+            command.add("-line");
+        }
+        if (Japex.test) {
+            command.add("-test");
+        }
+        if (_reportDirectory != null) {
+            command.add("-reportDirectory");
+            command.add(_reportDirectory.getAbsolutePath());
+        }
+        if (_testCase != null) {
+            command.add("-testCase");
+            command.add(_testCase);
+        }
+        if (_calibration != null) {
+            command.add("-calibration");
+            command.add(_calibration);
+        }
+        command.add(_driverImpl.getName());
+        command.addAll(_configFiles);
+        return command;
+    }
+    
+    static String encodeParams(ParamsImpl params) 
+        throws UnsupportedEncodingException 
+    {
+        StringBuilder sb = new StringBuilder();
+        for (String name : params.getLocalParams()) {
+            if (sb.length() > 0) {
+                sb.append('&');
+            }
+            sb.append(URLEncoder.encode(name, ENCODING)).append('=')
+              .append(URLEncoder.encode(params.getRawParam(name), ENCODING));
+        }
+        return sb.toString();
+    }
+    
+    static String encodeList(List<String> list) 
+        throws UnsupportedEncodingException 
+    {
+        StringBuilder sb = new StringBuilder();
+        for (String s : list) {
+            if (sb.length() > 0) {
+                sb.append('&');
+            }
+            sb.append(URLEncoder.encode(s, ENCODING));
+        }
+        return sb.toString();
+    }
+    
+    static List<String> decodeList(String encoded) 
+        throws UnsupportedEncodingException 
+    {
+        List<String> list = new ArrayList<String>();
+        StringTokenizer tokenizer = new StringTokenizer(encoded, "&");
+        while (tokenizer.hasMoreTokens()) {
+            list.add(URLDecoder.decode(tokenizer.nextToken(), ENCODING));
+        }
+        return list;
+    }
+    
+    static void decodeParams(String encoded, ParamsImpl params) 
+        throws UnsupportedEncodingException 
+    {
+        StringTokenizer tokenizer = new StringTokenizer(encoded, "&");
+        while (tokenizer.hasMoreTokens()) {
+            String pair = tokenizer.nextToken();
+            int k = pair.indexOf('=');
+            params.setRawParam(URLDecoder.decode(pair.substring(0, k), ENCODING), 
+                URLDecoder.decode(pair.substring(k + 1), ENCODING));
+        }
+    }
+    
+    /**
+     * Copies the standard error of a child JVM to an output writer as 
+     * it is produced.
+     */
+    static class StreamPump extends Thread {
+        
+        Reader _reader;
+        PrintWriter _writer;
+        
+        StreamPump(InputStream is, PrintWriter writer) {
+            _reader = new InputStreamReader(is);
+            _writer = writer;
+            setDaemon(true);
+        }
+        
+        public void run() {
+            try {
+                int n;
+                char[] buffer = new char[1024];
+                while ((n = _reader.read(buffer)) != -1) {
+                    _writer.write(buffer, 0, n);
+                    _writer.flush();
+                }
+            }
+            catch (IOException e) {
+                // Child JVM has terminated
+            }
+        }
+    }
+    
+    /**
+     * Entry point of a child JVM. 
+     */
+    public static void main(String[] args) {
+        // Reserve standard output for results
+        PrintStream results = System.out;
+        System.setOut(System.err);
+        
+        String driverName = null;
+        String testCaseName = null;
+        File reportDirectory = null;
+        String[] calibration = null;
+        List<String> configFiles = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-verbose")) {
+                Japex.verbose = true;
+            }
+            else if (args[i].equals("-silent")) {
+                Japex.silent = true;
+            }
+            else if (args[i].equals("-line")) {
+                Japex.resultPerLine = true;
+            }
+            else if (args[i].equals("-test")) {
+                Japex.test = true;
+            }
+            else if (args[i].equals("-reportDirectory") && i + 1 < args.length) {
+                reportDirectory = new File(args[++i]);
+            }
+            else if (args[i].equals("-testCase") && i + 1 < args.length) {
+                testCaseName = args[++i];
+            }
+            else if (args[i].equals("-calibration") && i + 1 < args.length) {
+                calibration = args[++i].split(",");
+            }
+            else if (driverName == null) {
+                driverName = args[i];
+            }
+            else {
+                configFiles.add(args[i]);
+            }
+        }
+        
+        try {
+            Engine engine = new Engine();
+            engine.setOutputWriter(new PrintWriter(System.err, true));
+            engine.setForkedDriver(driverName);
+            engine.setForkedTestCase(testCaseName);
+            engine.setReportDirectory(reportDirectory);
+            if (calibration != null) {
+                engine.setCalibration(Long.parseLong(calibration[0]), 
+                    Double.parseDouble(calibration[1]), Double.parseDouble(calibration[2]));
+            }
+            TestSuiteImpl testSuite = engine.start(configFiles);
+            
+            DriverImpl driverImpl = testSuite.getDriverInfoList().get(0);
+            for (int r = 0; r < driverImpl.getNumberOfRuns(); r++) {
+                List<TestCaseImpl> testCases = driverImpl.getTestCases(r);
+                for (int n = 0; n < testCases.size(); n++) {
+                    results.println(PREFIX + "testCase " + r + " " + n + " " 
+                        + encodeParams(testCases.get(n)));
+                }
+            }
+            results.println(PREFIX + "driver " + encodeParams(driverImpl));
+            
+            ParamsImpl environment = new ParamsImpl();
+            for (String name : ENVIRONMENT_PARAMS) {
+                if (testSuite.hasParam(name)) {
+                    environment.setRawParam(name, testSuite.getRawParam(name));
+                }
+            }
+            results.println(PREFIX + "environment " + encodeParams(environment));
+            results.println(PREFIX + "end");
+            results.flush();
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            Japex.incrementExitCode();
+        }
+        
+        System.exit(Japex.exitCode);
+    }
+}
@@ -49,6 +49,32 @@ public class JapexThreadFactory implements ThreadFactory {
     public JapexThreadFactory(ClassLoader classLoader) {
         _classLoader = classLoader;
     }
+    
+    /**
+     * Create a factory of virtual threads if <code>virtual</code> is
+     * true. Virtual threads are only available in Java 21 or later, so
+     * they are created using reflection.
+     */
+    public JapexThreadFactory(ClassLoader classLoader, boolean virtual) {
+        _classLoader = classLoader;
+        if (virtual) {
+            threadFactory = getVirtualThreadFactory();
+        }
+    }
+    
+    static ThreadFactory getVirtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class)
+                .invoke(builder, "japex-virtual-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        }
+        catch (Exception e) {
+            throw new JapexException("Parameter 'japex.threadMode' set to " 
+                + "'virtual' requires Java 21 or later", e);
+        }
+    }
  
     /**
      * Return a new thread after setting its priority to MAX and
@@ -0,0 +1,171 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Worker of a test suite distributed by a {@link JapexCoordinator}. A 
+ * worker connects to the coordinator and, for each work unit it 
+ * receives, launches a child JVM as done for japex.forks and relays 
+ * the child's standard output and error, until the coordinator has no
+ * more units. Config files and class paths must be available at the 
+ * same location on every worker, and files written in the report 
+ * directory, such as JFR recordings, stay on the worker's host. The
+ * worker sends the token of the coordinator, read from the environment
+ * variable {@link JapexCoordinator#TOKEN_VARIABLE}, to register.
+ */
+public class JapexWorker {
+    
+    /**
+     * Copies lines of a child's output to the connection, one line at a
+     * time so that lines of its standard output and error are not mixed.
+     */
+    static class LinePump extends Thread {
+        
+        BufferedReader _reader;
+        PrintWriter _writer;
+        
+        LinePump(InputStream is, PrintWriter writer) 
+            throws UnsupportedEncodingException 
+        {
+            _reader = new BufferedReader(new InputStreamReader(is, JapexFork.ENCODING));
+            _writer = writer;
+            setDaemon(true);
+        }
+        
+        public void run() {
+            try {
+                String line;
+                while ((line = _reader.readLine()) != null) {
+                    synchronized (_writer) {
+                        _writer.println(line);
+                        _writer.flush();
+                    }
+                }
+            }
+            catch (IOException e) {
+                // Child JVM has terminated
+            }
+        }
+    }
+    
+    /**
+     * Launch a child JVM and relay its output, returns its exit code.
+     */
+    static int execute(List<String> command, PrintWriter writer) 
+        throws IOException, InterruptedException 
+    {
+        Process process = new ProcessBuilder(command).start();
+        process.getOutputStream().close();
+        
+        Thread errorPump = new LinePump(process.getErrorStream(), writer);
+        errorPump.start();
+        new LinePump(process.getInputStream(), writer).run();
+        
+        int exitCode = process.waitFor();
+        errorPump.join();
+        return exitCode;
+    }
+    
+    public static void main(String[] args) {
+        int k = (args.length == 1) ? args[0].lastIndexOf(':') : -1;
+        String token = System.getenv(JapexCoordinator.TOKEN_VARIABLE);
+        if (k <= 0 || token == null || token.length() == 0) {
+            System.err.println(
+                "Usage: japex-worker coordinator-host:port\n" +
+                "   Execute work units sent by a Japex coordinator, see -coordinator. The\n" +
+                "   token of the coordinator must be set in the environment variable " + 
+                    JapexCoordinator.TOKEN_VARIABLE);
+            System.exit(1);
+        }
+        
+        try {
+            Socket socket = new Socket(args[0].substring(0, k), 
+                Integer.parseInt(args[0].substring(k + 1)));
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                socket.getInputStream(), JapexFork.ENCODING));
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                socket.getOutputStream(), JapexFork.ENCODING));
+            
+            // Name is <pid>@<host> to tell apart workers on the same host
+            String workerName = ManagementFactory.getRuntimeMXBean().getName();
+            writer.println(JapexFork.PREFIX + "worker " + workerName + " " + token);
+            writer.flush();
+            System.out.println("Worker " + workerName + " connected to " + args[0]);
+            
+            List<String> jvmArguments = new ArrayList<String>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith(JapexFork.PREFIX)) {
+                    continue;
+                }
+                String[] tokens = line.substring(JapexFork.PREFIX.length()).split(" ");
+                if (tokens[0].equals("jvmArgs")) {
+                    jvmArguments = JapexFork.decodeList(tokens.length > 1 ? tokens[1] : "");
+                }
+                else if (tokens[0].equals("run")) {
+                    List<String> arguments = 
+                        JapexFork.decodeList(tokens.length > 1 ? tokens[1] : "");
+                    System.out.println("Executing " + arguments);
+                    int exitCode = execute(
+                        JapexFork.getCommand(jvmArguments, arguments), writer);
+                    synchronized (writer) {
+                        writer.println(JapexFork.PREFIX + "exit " + exitCode);
+                        writer.flush();
+                    }
+                }
+                else if (tokens[0].equals("done")) {
+                    break;
+                }
+            }
+            socket.close();
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        
+        System.exit(0);
+    }
+}
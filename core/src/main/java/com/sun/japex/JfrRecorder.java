@@ -0,0 +1,216 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.*;
+
+/**
+ * Captures a JFR recording while a driver or a test case executes, and
+ * emits a custom JFR event for each of the prepare, warmup, run and 
+ * finish phases carrying the driver and test case names, so that 
+ * profiles can be lined up with Japex phases. JFR is accessed using
+ * reflection and phase events are defined dynamically using 
+ * <code>jdk.jfr.EventFactory</code>; nothing is recorded or emitted 
+ * if JFR is not available.
+ */
+final class JfrRecorder {
+    
+    static final String PHASE_EVENT = "com.sun.japex.Phase";
+    
+    /**
+     * Factory of phase events, an instance of <code>jdk.jfr.EventFactory</code>,
+     * or null if JFR is not available.
+     */
+    static Object _phaseEventFactory;
+    
+    static Method _newEvent, _set, _begin, _end, _commit;
+    
+    static boolean _initialized;
+    
+    /**
+     * JFR recording, an instance of <code>jdk.jfr.Recording</code>.
+     */
+    Object _recording;
+    
+    /**
+     * Start a recording using a predefined configuration, such as 
+     * 'default' or 'profile', or a .jfc file.
+     */
+    JfrRecorder(String settings) {
+        try {
+            Class<?> configurationClass = Class.forName("jdk.jfr.Configuration");
+            Object configuration;
+            if (new File(settings).isFile()) {
+                Object path = File.class.getMethod("toPath").invoke(new File(settings));
+                configuration = configurationClass.getMethod("create", 
+                    Class.forName("java.nio.file.Path")).invoke(null, path);
+            }
+            else {
+                configuration = configurationClass.getMethod("getConfiguration", 
+                    String.class).invoke(null, settings);
+            }
+            Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+            _recording = recordingClass.getConstructor(configurationClass)
+                .newInstance(configuration);
+            recordingClass.getMethod("start").invoke(_recording);
+        }
+        catch (ClassNotFoundException e) {
+            throw new JapexException("JFR is not available in this VM");
+        }
+        catch (Exception e) {
+            throw new JapexException("Unable to start JFR recording using settings '" 
+                + settings + "': " + getCause(e));
+        }
+    }
+    
+    /**
+     * Stop the recording and write it to a file.
+     */
+    void stop(File file) {
+        try {
+            Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+            recordingClass.getMethod("stop").invoke(_recording);
+            file.getParentFile().mkdirs();
+            Object path = File.class.getMethod("toPath").invoke(file);
+            recordingClass.getMethod("dump", Class.forName("java.nio.file.Path"))
+                .invoke(_recording, path);
+        }
+        catch (Exception e) {
+            throw new JapexException("Unable to write JFR recording to '" 
+                + file + "': " + getCause(e));
+        }
+        finally {
+            try {
+                Class.forName("jdk.jfr.Recording").getMethod("close").invoke(_recording);
+            }
+            catch (Exception e) {
+                // Falls through
+            }
+        }
+    }
+    
+    static Throwable getCause(Exception e) {
+        return e.getCause() != null ? e.getCause() : e;
+    }
+    
+    /**
+     * Begin a phase event, returns null if JFR is not available.
+     */
+    static Object beginPhase(String driver, String testCase, String phase) {
+        if (!initPhaseEvents()) {
+            return null;
+        }
+        try {
+            Object event = _newEvent.invoke(_phaseEventFactory);
+            _set.invoke(event, 0, driver);
+            _set.invoke(event, 1, testCase);
+            _set.invoke(event, 2, phase);
+            _begin.invoke(event);
+            return event;
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+    
+    /**
+     * End and commit a phase event returned by {@link #beginPhase}.
+     */
+    static void endPhase(Object event) {
+        if (event == null) {
+            return;
+        }
+        try {
+            _end.invoke(event);
+            _commit.invoke(event);
+        }
+        catch (Exception e) {
+            // Falls through
+        }
+    }
+    
+    /**
+     * Define the phase event type the first time it is needed. Returns 
+     * false if JFR is not available.
+     */
+    static synchronized boolean initPhaseEvents() {
+        if (!_initialized) {
+            _initialized = true;
+            try {
+                Class<?> annotationClass = Class.forName("jdk.jfr.AnnotationElement");
+                Constructor<?> annotation = annotationClass.getConstructor(
+                    Class.class, Object.class);
+                List<Object> annotations = new ArrayList<Object>();
+                annotations.add(annotation.newInstance(
+                    Class.forName("jdk.jfr.Name"), PHASE_EVENT));
+                annotations.add(annotation.newInstance(
+                    Class.forName("jdk.jfr.Label"), "Japex Phase"));
+                annotations.add(annotation.newInstance(
+                    Class.forName("jdk.jfr.Category"), new String[] { "Japex" }));
+                annotations.add(annotation.newInstance(
+                    Class.forName("jdk.jfr.StackTrace"), Boolean.FALSE));
+                
+                Class<?> descriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+                Constructor<?> descriptor = descriptorClass.getConstructor(
+                    Class.class, String.class);
+                List<Object> fields = new ArrayList<Object>();
+                fields.add(descriptor.newInstance(String.class, "driver"));
+                fields.add(descriptor.newInstance(String.class, "testCase"));
+                fields.add(descriptor.newInstance(String.class, "phase"));
+                
+                Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+                Class<?> eventClass = Class.forName("jdk.jfr.Event");
+                _newEvent = factoryClass.getMethod("newEvent");
+                _set = eventClass.getMethod("set", int.class, Object.class);
+                _begin = eventClass.getMethod("begin");
+                _end = eventClass.getMethod("end");
+                _commit = eventClass.getMethod("commit");
+                _phaseEventFactory = factoryClass.getMethod("create", List.class, List.class)
+                    .invoke(null, annotations, fields);
+            }
+            catch (Exception e) {
+                _phaseEventFactory = null;
+            }
+        }
+        return _phaseEventFactory != null;
+    }
+}
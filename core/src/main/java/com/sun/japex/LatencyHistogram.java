@@ -0,0 +1,202 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+/**
+ * A fixed-size, log-bucketed histogram of latencies in nanoseconds. Values 
+ * are grouped into buckets whose width grows with their magnitude so that 
+ * every recorded value is represented with a relative error of at most 
+ * 1/128, i.e. below 1%. 
+ * All memory is allocated by the constructor, recording a value never 
+ * allocates.
+ *
+ * Instances of this class are not thread safe; each worker thread
+ * records into its own histogram and the engine merges them once the 
+ * run phase is over.
+ */
+public class LatencyHistogram {
+    
+    /**
+     * Number of bits used to index a bucket within a power of two. Each
+     * power of two is split into 2^(SUB_BUCKET_BITS - 1) buckets, which 
+     * bounds the relative error to 1/2^(SUB_BUCKET_BITS - 1).
+     */
+    static final int SUB_BUCKET_BITS = 8;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+    
+    /**
+     * Largest value that can be tracked, about 4.8 hours. Larger values 
+     * are recorded as this value.
+     */
+    static final long MAX_VALUE = (1L << 44) - 1;
+    
+    static final int BUCKET_COUNT = bucketIndex(MAX_VALUE) + 1;
+    
+    /**
+     * Bucket counts. The first <code>SUB_BUCKET_COUNT</code> buckets 
+     * have a width of 1ns, each subsequent group of 
+     * <code>SUB_BUCKET_HALF</code> buckets doubles that width.
+     */
+    final long[] _counts = new long[BUCKET_COUNT];
+    
+    long _totalCount;
+    double _sum;
+    long _min = Long.MAX_VALUE;
+    long _max;
+    
+    public LatencyHistogram() {
+    }
+    
+    /**
+     * Returns the approximate size in bytes of a histogram, about 38 KB, 
+     * most of it taken by the bucket counts.
+     */
+    static long getFootprint() {
+        return 8L * BUCKET_COUNT + 64L;
+    }
+    
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return shift * SUB_BUCKET_HALF + (int) (value >>> shift);
+    }
+    
+    /**
+     * Returns the largest value that falls in the same bucket as
+     * <code>index</code>.
+     */
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_HALF - 1;
+        long subBucket = index - shift * SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+    
+    public void recordValue(long value) {
+        recordValue(value, 1L);
+    }
+    
+    /**
+     * Record <code>count</code> occurrences of <code>value</code>.
+     */
+    public void recordValue(long value, long count) {
+        if (value < 0L) {
+            value = 0L;
+        }
+        else if (value > MAX_VALUE) {
+            value = MAX_VALUE;
+        }
+        _counts[bucketIndex(value)] += count;
+        _totalCount += count;
+        _sum += (double) value * count;
+        if (value < _min) {
+            _min = value;
+        }
+        if (value > _max) {
+            _max = value;
+        }
+    }
+    
+    /**
+     * Add all the values recorded in <code>other</code> to this histogram.
+     */
+    public void add(LatencyHistogram other) {
+        if (other._totalCount == 0L) {
+            return;
+        }
+        for (int i = 0; i < _counts.length; i++) {
+            _counts[i] += other._counts[i];
+        }
+        _totalCount += other._totalCount;
+        _sum += other._sum;
+        _min = Math.min(_min, other._min);
+        _max = Math.max(_max, other._max);
+    }
+    
+    public void reset() {
+        java.util.Arrays.fill(_counts, 0L);
+        _totalCount = 0L;
+        _sum = 0.0;
+        _min = Long.MAX_VALUE;
+        _max = 0L;
+    }
+    
+    public long getTotalCount() {
+        return _totalCount;
+    }
+    
+    public long getMin() {
+        return _totalCount == 0L ? 0L : _min;
+    }
+    
+    public long getMax() {
+        return _max;
+    }
+    
+    public double getMean() {
+        return _totalCount == 0L ? Double.NaN : _sum / _totalCount;
+    }
+    
+    /**
+     * Returns the value below which <code>percentile</code> percent of
+     * the recorded values fall. For example, <code>getValueAtPercentile(99.9)</code>
+     * returns the 99.9th percentile.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (_totalCount == 0L) {
+            return 0L;
+        }
+        double fraction = Math.min(Math.max(percentile, 0.0), 100.0) / 100.0;
+        long countAtPercentile = Math.max(1L, (long) Math.ceil(fraction * _totalCount));
+        
+        long count = 0L;
+        for (int i = 0; i < _counts.length; i++) {
+            count += _counts[i];
+            if (count >= countAtPercentile) {
+                return Math.min(highestEquivalentValue(i), _max);
+            }
+        }
+        return _max;
+    }
+}
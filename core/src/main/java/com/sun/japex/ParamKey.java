@@ -0,0 +1,136 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typed handle of a param, resolved to a slot of a {@link ParamSnapshot}
+ * so that reading the param in <code>run()</code> requires no locking, 
+ * boxing or parsing. Keys are shared by all drivers and should be 
+ * created once, e.g. as static fields of a driver class:
+ *
+ * <pre>
+ * static final ParamKey&lt;Long&gt; SIZE = ParamKey.longKey("size");
+ * ...
+ * long size = getFrozenParams().getLong(SIZE);
+ * </pre>
+ *
+ * Reading a key created after a snapshot was taken throws a 
+ * {@link JapexException}.
+ */
+public final class ParamKey<T> {
+    
+    static final int BOOLEAN = 0;
+    static final int INT     = 1;
+    static final int LONG    = 2;
+    static final int DOUBLE  = 3;
+    static final int STRING  = 4;
+    
+    /**
+     * All keys created so far, indexed by slot.
+     */
+    static final List<ParamKey<?>> _keys = new ArrayList<ParamKey<?>>();
+    
+    /**
+     * Keys by type and name, so that a param has one slot per type.
+     */
+    static final Map<String, ParamKey<?>> _keysByName = 
+        new HashMap<String, ParamKey<?>>();
+    
+    final String _name;
+    final int _type;
+    final int _slot;
+    
+    private ParamKey(String name, int type, int slot) {
+        _name = name;
+        _type = type;
+        _slot = slot;
+    }
+    
+    public String getName() {
+        return _name;
+    }
+    
+    public static ParamKey<Boolean> booleanKey(String name) {
+        return getKey(name, BOOLEAN);
+    }
+    
+    public static ParamKey<Integer> intKey(String name) {
+        return getKey(name, INT);
+    }
+    
+    public static ParamKey<Long> longKey(String name) {
+        return getKey(name, LONG);
+    }
+    
+    public static ParamKey<Double> doubleKey(String name) {
+        return getKey(name, DOUBLE);
+    }
+    
+    public static ParamKey<String> stringKey(String name) {
+        return getKey(name, STRING);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static synchronized <T> ParamKey<T> getKey(String name, int type) {
+        String id = type + ":" + name;
+        ParamKey<T> key = (ParamKey<T>) _keysByName.get(id);
+        if (key == null) {
+            key = new ParamKey<T>(name, type, _keys.size());
+            _keys.add(key);
+            _keysByName.put(id, key);
+        }
+        return key;
+    }
+    
+    /**
+     * Returns a copy of the list of keys created so far.
+     */
+    static synchronized List<ParamKey<?>> getKeys() {
+        return new ArrayList<ParamKey<?>>(_keys);
+    }
+    
+    public String toString() {
+        return _name;
+    }
+}
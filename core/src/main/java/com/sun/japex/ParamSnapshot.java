@@ -0,0 +1,155 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+import java.util.List;
+
+/**
+ * Immutable snapshot of the values of every {@link ParamKey}, taken once
+ * the params it is read for can no longer change, e.g. after 
+ * <code>prepare()</code>, see {@link JapexDriverBase#getFrozenParams()}.
+ * Values are converted when the snapshot is taken and read from plain
+ * arrays, so unlike the getters of {@link Params} reading a value is 
+ * neither synchronized nor needs parsing. Getters return 0, NaN, false
+ * or null for params that are not defined, and throw a 
+ * {@link JapexException} for keys created after the snapshot was taken.
+ */
+public final class ParamSnapshot {
+    
+    final boolean[] _defined;
+    final boolean[] _booleans;
+    final long[] _longs;
+    final double[] _doubles;
+    final String[] _strings;
+    
+    /**
+     * Take a snapshot of the given scopes, from the most to the least 
+     * specific, e.g. a test case and its driver. Each key is resolved in
+     * the first scope in which its param is defined locally, see 
+     * {@link ParamsImpl#hasLocalParam}, or else in the last scope, 
+     * including global params.
+     */
+    public static ParamSnapshot freeze(ParamsImpl... scopes) {
+        return new ParamSnapshot(ParamKey.getKeys(), scopes);
+    }
+    
+    private ParamSnapshot(List<ParamKey<?>> keys, ParamsImpl[] scopes) {
+        int n = keys.size();
+        _defined = new boolean[n];
+        _booleans = new boolean[n];
+        _longs = new long[n];
+        _doubles = new double[n];
+        _strings = new String[n];
+        
+        for (ParamKey<?> key : keys) {
+            int slot = key._slot;
+            _doubles[slot] = Double.NaN;
+            
+            for (int i = 0; i < scopes.length; i++) {
+                ParamsImpl params = scopes[i];
+                if (params == null || !(i == scopes.length - 1 || params.isGlobal() ? 
+                        params.hasParam(key._name) : params.hasLocalParam(key._name))) 
+                {
+                    continue;
+                }
+                try {
+                    switch (key._type) {
+                        case ParamKey.BOOLEAN:
+                            _booleans[slot] = params.getBooleanParam(key._name);
+                            break;
+                        case ParamKey.INT:
+                            _longs[slot] = params.getIntParam(key._name);
+                            break;
+                        case ParamKey.LONG:
+                            _longs[slot] = params.getLongParam(key._name);
+                            break;
+                        case ParamKey.DOUBLE:
+                            _doubles[slot] = params.getDoubleParam(key._name);
+                            break;
+                        default:
+                            _strings[slot] = params.getParam(key._name);
+                    }
+                }
+                catch (NumberFormatException e) {
+                    throw new JapexException("Value '" + params.getParam(key._name) 
+                        + "' of parameter '" + key._name + "' is not a number");
+                }
+                _defined[slot] = true;
+                break;
+            }
+        }
+    }
+    
+    /**
+     * Returns the slot of a key, which must have been created before the
+     * snapshot was taken.
+     */
+    private int getSlot(ParamKey<?> key) {
+        int slot = key._slot;
+        if (slot >= _defined.length) {
+            throw new JapexException("Parameter key '" + key._name 
+                + "' was created after the params were frozen");
+        }
+        return slot;
+    }
+    
+    public boolean has(ParamKey<?> key) {
+        return key._slot < _defined.length && _defined[key._slot];
+    }
+    
+    public boolean getBoolean(ParamKey<Boolean> key) {
+        return _booleans[getSlot(key)];
+    }
+    
+    public int getInt(ParamKey<Integer> key) {
+        return (int) _longs[getSlot(key)];
+    }
+    
+    public long getLong(ParamKey<Long> key) {
+        return _longs[getSlot(key)];
+    }
+    
+    public double getDouble(ParamKey<Double> key) {
+        return _doubles[getSlot(key)];
+    }
+    
+    public String getString(ParamKey<String> key) {
+        return _strings[getSlot(key)];
+    }
+}
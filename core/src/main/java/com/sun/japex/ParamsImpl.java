@@ -201,6 +201,35 @@ public class ParamsImpl implements Params {
         return (String) value;
     }
     
+    /**
+     * Set a param from a value returned by <code>getRawParam()</code>,
+     * without evaluating any sub-expressions in it.
+     */
+    synchronized void setRawParam(String name, String value) {
+        convertAndPut(name, value);
+    }
+    
+    /**
+     * Returns a copy of the params defined in this set, excluding 
+     * defaults, which can be restored with <code>restoreParams()</code>.
+     */
+    synchronized Map<String, Object> saveParams() {
+        return new HashMap<String, Object>(_mapping);
+    }
+    
+    synchronized void restoreParams(Map<String, Object> saved) {
+        _mapping = new HashMap<String, Object>(saved);
+    }
+    
+    /**
+     * Returns the value of a param without any formatting. Unlike
+     * <code>getParam()</code>, no precision is lost for doubles.
+     */
+    synchronized String getRawParam(String name) {
+        Object value = getParamOrDefault(name);
+        return value != null ? value.toString() : null;
+    }
+    
     // -- Boolean params --------------------------------------------------
     
     public synchronized void setBooleanParam(String name, boolean value) {
@@ -0,0 +1,307 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Appends a JSON record to a file for every completed test case, one 
+ * per line, with the driver and test case names, the run number and 
+ * the params set in the test case. Each record is written and synced
+ * to disk before the engine proceeds, so the results measured so far 
+ * survive a crash of the VM. Values that are valid JSON numbers or
+ * booleans are written as such, and all others as strings. Records 
+ * can be read back using {@link #read}, e.g. to resume a test suite.
+ */
+public class ResultStreamListener extends EngineListenerAdapter {
+    
+    static final Pattern JSON_NUMBER = 
+        Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+    
+    File _file;
+    
+    FileOutputStream _out;
+    
+    public ResultStreamListener(File file) {
+        _file = file;
+    }
+    
+    public File getFile() {
+        return _file;
+    }
+    
+    public void testCaseCompleted(Driver driver, int run, TestCase testCase) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"driver\":").append(quote(driver.getName()))
+          .append(",\"run\":").append(run)
+          .append(",\"warmup\":").append(driver.hasParam(Constants.WARMUPS_PER_DRIVER) 
+              && run < driver.getIntParam(Constants.WARMUPS_PER_DRIVER))
+          .append(",\"testCase\":").append(quote(testCase.getName()))
+          .append(",\"params\":{");
+        boolean first = true;
+        ParamsImpl params = (ParamsImpl) testCase;
+        for (String name : params.getLocalParams()) {
+            String value = params.getRawParam(name);
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            sb.append(quote(name)).append(':')
+              .append(isJsonLiteral(value) ? value : quote(value));
+        }
+        sb.append("}}\n");
+        
+        try {
+            if (_out == null) {
+                _file.getParentFile().mkdirs();
+                _out = new FileOutputStream(_file, true);
+            }
+            _out.write(sb.toString().getBytes("UTF-8"));
+            _out.getFD().sync();
+        }
+        catch (IOException e) {
+            throw new JapexException("Unable to write results to '" + _file 
+                + "': " + e.getMessage());
+        }
+    }
+    
+    public void suiteCompleted(TestSuite testSuite) {
+        close();
+    }
+    
+    public void close() {
+        if (_out != null) {
+            try {
+                _out.close();
+            }
+            catch (IOException e) {
+                // Falls through
+            }
+            _out = null;
+        }
+    }
+    
+    /**
+     * Returns the key of a test case in the map returned by {@link #read}.
+     */
+    public static String getKey(String driver, int run, String testCase) {
+        return driver + '\n' + run + '\n' + testCase;
+    }
+    
+    /**
+     * Read the records of a file written by this listener and return the
+     * params of each test case by key. Param values are returned as they
+     * were written, so they can be set using <code>setRawParam()</code>. 
+     * Later records of a test case replace earlier ones, and lines that 
+     * cannot be parsed, such as one truncated by a crash, are skipped.
+     */
+    public static Map<String, Map<String, String>> read(File file) throws IOException {
+        Map<String, Map<String, String>> result = 
+            new LinkedHashMap<String, Map<String, String>>();
+        BufferedReader reader = new BufferedReader(
+            new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    Map<?, ?> record = (Map<?, ?>) new JsonReader(line).readValue();
+                    Map<String, String> params = new LinkedHashMap<String, String>();
+                    for (Map.Entry<?, ?> entry : ((Map<?, ?>) record.get("params")).entrySet()) {
+                        params.put((String) entry.getKey(), (String) entry.getValue());
+                    }
+                    result.put(getKey((String) record.get("driver"), 
+                        Integer.parseInt((String) record.get("run")), 
+                        (String) record.get("testCase")), params);
+                }
+                catch (RuntimeException e) {
+                    // Skip malformed record
+                }
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return result;
+    }
+    
+    /**
+     * Reads the subset of JSON written by this listener. Objects are 
+     * returned as maps, and strings, numbers, booleans and null as the
+     * string they denote or their literal text, respectively.
+     */
+    static class JsonReader {
+        
+        String _s;
+        int _pos;
+        
+        JsonReader(String s) {
+            _s = s;
+        }
+        
+        Object readValue() {
+            skipSpaces();
+            char c = peek();
+            if (c == '{') {
+                Map<String, Object> map = new LinkedHashMap<String, Object>();
+                _pos++;
+                skipSpaces();
+                if (peek() == '}') {
+                    _pos++;
+                    return map;
+                }
+                while (true) {
+                    skipSpaces();
+                    String name = readString();
+                    skipSpaces();
+                    expect(':');
+                    map.put(name, readValue());
+                    skipSpaces();
+                    if (peek() == ',') {
+                        _pos++;
+                    }
+                    else {
+                        expect('}');
+                        return map;
+                    }
+                }
+            }
+            if (c == '"') {
+                return readString();
+            }
+            int start = _pos;
+            while (_pos < _s.length() && ",}] ".indexOf(_s.charAt(_pos)) < 0) {
+                _pos++;
+            }
+            String literal = _s.substring(start, _pos);
+            if (literal.equals("null")) {
+                return null;
+            }
+            if (!isJsonLiteral(literal)) {
+                throw new IllegalArgumentException("Invalid JSON value: " + literal);
+            }
+            return literal;
+        }
+        
+        String readString() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c == '\\') {
+                    c = next();
+                    switch (c) {
+                        case 'n': sb.append('\n'); break;
+                        case 'r': sb.append('\r'); break;
+                        case 't': sb.append('\t'); break;
+                        case 'b': sb.append('\b'); break;
+                        case 'f': sb.append('\f'); break;
+                        case 'u':
+                            sb.append((char) Integer.parseInt(_s.substring(_pos, _pos + 4), 16));
+                            _pos += 4;
+                            break;
+                        default: sb.append(c);
+                    }
+                }
+                else {
+                    sb.append(c);
+                }
+            }
+        }
+        
+        void skipSpaces() {
+            while (_pos < _s.length() && Character.isWhitespace(_s.charAt(_pos))) {
+                _pos++;
+            }
+        }
+        
+        char peek() {
+            if (_pos >= _s.length()) {
+                throw new IllegalArgumentException("Unexpected end of JSON");
+            }
+            return _s.charAt(_pos);
+        }
+        
+        char next() {
+            char c = peek();
+            _pos++;
+            return c;
+        }
+        
+        void expect(char c) {
+            if (next() != c) {
+                throw new IllegalArgumentException("Expected '" + c + "' in JSON");
+            }
+        }
+    }
+    
+    static boolean isJsonLiteral(String value) {
+        return value != null && (value.equals("true") || value.equals("false") 
+            || JSON_NUMBER.matcher(value).matches());
+    }
+    
+    static String quote(String s) {
+        if (s == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    }
+                    else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
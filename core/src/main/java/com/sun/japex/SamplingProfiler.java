@@ -0,0 +1,188 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+import java.util.*;
+
+import static com.sun.japex.Constants.*;
+
+/**
+ * Samples the stacks of the threads executing a driver at a fixed 
+ * interval during a run phase, using a daemon thread. Samples are 
+ * aggregated as collapsed stacks, i.e. the frames of a stack from the 
+ * root separated by ';', each mapped to the number of samples in which
+ * it was observed. Stacks are obtained using 
+ * <code>Thread.getStackTrace()</code>, which only returns at safepoints,
+ * and the CPU time used by the sampling thread is reported as the 
+ * profiler's overhead.
+ */
+final class SamplingProfiler implements Runnable {
+    
+    static final String START_BARRIER_CLASS = StartBarrier.class.getName();
+    
+    /**
+     * Threads being sampled, owned by the phase and released once 
+     * sampling stops.
+     */
+    List<Thread> _threads;
+    
+    long _intervalNanos;
+    
+    /**
+     * Collapsed stacks to which samples are added.
+     */
+    Map<String, Integer> _stacks;
+    
+    int _samples;
+    
+    /**
+     * CPU time used by the sampling thread, or the elapsed time spent
+     * sampling if CPU time is not available.
+     */
+    long _samplingNanos;
+    
+    long _startNanos;
+    
+    volatile boolean _sampling;
+    
+    Thread _sampler;
+    
+    /**
+     * Start sampling a list of threads every <code>interval</code> 
+     * millis, adding samples to <code>stacks</code>.
+     */
+    void start(List<Thread> threads, double interval, Map<String, Integer> stacks) {
+        _threads = threads;
+        _intervalNanos = Math.max(1L, (long) (interval * 1000000.0));
+        _stacks = stacks;
+        _samples = 0;
+        _samplingNanos = 0L;
+        _sampling = true;
+        _sampler = new Thread(this, "japex-profiler");
+        _sampler.setDaemon(true);
+        _sampler.setPriority(Thread.MAX_PRIORITY);
+        _startNanos = Util.currentTimeNanos();
+        _sampler.start();
+    }
+    
+    /**
+     * Stop sampling and set japex.profileSamples and japex.profileOverhead
+     * as the sampling thread's CPU time as a percentage of the elapsed time.
+     */
+    void stop(TestCaseImpl tc) {
+        _sampling = false;
+        _sampler.interrupt();
+        try {
+            _sampler.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        _threads = null;
+        long elapsed = Util.currentTimeNanos() - _startNanos;
+        
+        tc.setIntParam(PROFILE_SAMPLES, _samples);
+        tc.setDoubleParam(PROFILE_OVERHEAD, 
+            elapsed > 0 ? 100.0 * _samplingNanos / elapsed : 0.0);
+    }
+    
+    public void run() {
+        long startCpuTime = Util.getThreadCpuTime();
+        long samplingTime = 0L;
+        long next = Util.currentTimeNanos();
+        while (_sampling) {
+            long start = Util.currentTimeNanos();
+            for (Thread t : _threads) {
+                sample(t);
+            }
+            long end = Util.currentTimeNanos();
+            samplingTime += end - start;
+            
+            // Sample at a fixed rate, skipping intervals if falling behind
+            next += _intervalNanos;
+            if (next < end) {
+                next = end + _intervalNanos - (end - next) % _intervalNanos;
+            }
+            try {
+                long sleep = next - end;
+                Thread.sleep(sleep / 1000000L, (int) (sleep % 1000000L));
+            }
+            catch (InterruptedException e) {
+                break;
+            }
+        }
+        _samplingNanos = startCpuTime >= 0 ? 
+            Util.getThreadCpuTime() - startCpuTime : samplingTime;
+    }
+    
+    /**
+     * Add a sample of a thread, unless it is no longer alive or waiting
+     * for the other threads to start.
+     */
+    void sample(Thread t) {
+        StackTraceElement[] stack = t.getStackTrace();
+        if (stack.length == 0) {
+            return;
+        }
+        for (StackTraceElement frame : stack) {
+            if (frame.getClassName().equals(START_BARRIER_CLASS)) {
+                return;
+            }
+        }
+        String collapsed = collapse(stack);
+        Integer count = _stacks.get(collapsed);
+        _stacks.put(collapsed, count == null ? 1 : count + 1);
+        _samples++;
+    }
+    
+    /**
+     * Returns the frames of a stack, from the root, separated by ';'.
+     */
+    static String collapse(StackTraceElement[] stack) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = stack.length - 1; i >= 0; i--) {
+            sb.append(stack[i].getClassName()).append('.')
+              .append(stack[i].getMethodName());
+            if (i > 0) {
+                sb.append(';');
+            }
+        }
+        return sb.toString();
+    }
+}
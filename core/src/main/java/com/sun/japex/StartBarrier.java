@@ -0,0 +1,182 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Releases all the threads of a warmup or run phase at the same time.
+ * Each driver instance waits on the barrier as soon as it is scheduled,
+ * first spinning for a short period and then parking; the engine waits
+ * until every thread has arrived, sets the end time of the phase and
+ * then releases them together. The actual start and end of each thread 
+ * are recorded as offsets from the release so that the engine can 
+ * report how far apart threads started and stopped.
+ */
+final class StartBarrier {
+    
+    /**
+     * Number of nanoseconds a thread spins before parking. Short enough 
+     * not to steal much CPU from threads that have not arrived yet.
+     */
+    static final long SPIN_NANOS = 1000000L;
+    
+    final int _nOfThreads;
+    
+    /**
+     * If false, threads park right away. Spinning does not help when 
+     * there are more threads than CPUs or when threads are virtual.
+     */
+    final boolean _spin;
+    
+    final AtomicInteger _arrived = new AtomicInteger();
+    
+    final Thread[] _waiters;
+    
+    volatile boolean _released;
+    
+    long _releaseNanos;
+    
+    final long[] _startOffsets;
+    
+    final long[] _endOffsets;
+    
+    StartBarrier(int nOfThreads, boolean spin) {
+        _nOfThreads = nOfThreads;
+        _spin = spin;
+        _waiters = new Thread[nOfThreads];
+        _startOffsets = new long[nOfThreads];
+        _endOffsets = new long[nOfThreads];
+    }
+    
+    /**
+     * Called by a worker thread before executing its phase. Returns 
+     * once the engine has released the barrier.
+     */
+    void await(int thread) {
+        _waiters[thread] = Thread.currentThread();
+        _arrived.incrementAndGet();
+        
+        if (_spin) {
+            long spinEnd = System.nanoTime() + SPIN_NANOS;
+            while (!_released && System.nanoTime() < spinEnd) {
+                // Spin
+            }
+        }
+        while (!_released) {
+            LockSupport.park(this);
+        }
+        _startOffsets[thread] = System.nanoTime() - _releaseNanos;
+    }
+    
+    /**
+     * Called by a worker thread after executing its phase.
+     */
+    void finish(int thread) {
+        _endOffsets[thread] = System.nanoTime() - _releaseNanos;
+    }
+    
+    /**
+     * Called by the engine to wait until all worker threads have 
+     * arrived at the barrier.
+     */
+    void awaitArrival() {
+        while (_arrived.get() < _nOfThreads) {
+            LockSupport.parkNanos(this, 100000L);
+        }
+    }
+    
+    /**
+     * Returns the worker threads of this phase. Only valid after 
+     * <code>awaitArrival()</code> returned and before the release.
+     */
+    List<Thread> getThreads() {
+        return new ArrayList<Thread>(Arrays.asList(_waiters));
+    }
+    
+    /**
+     * Called by the engine to release all the worker threads. Fields
+     * written by the engine before calling this method are visible to
+     * the worker threads once they return from <code>await()</code>.
+     */
+    void release() {
+        _releaseNanos = System.nanoTime();
+        _released = true;
+        for (int i = 0; i < _nOfThreads; i++) {
+            LockSupport.unpark(_waiters[i]);
+            _waiters[i] = null;
+        }
+    }
+    
+    /**
+     * Returns the time, in millis, between the first and the last thread 
+     * starting after the release. Only valid after all threads finished.
+     */
+    double getStartSkew() {
+        return Util.nanosToMillis(max(_startOffsets) - min(_startOffsets));
+    }
+    
+    /**
+     * Returns the time, in millis, between the first and the last thread
+     * finishing. Only valid after all threads finished.
+     */
+    double getStragglerTime() {
+        return Util.nanosToMillis(max(_endOffsets) - min(_endOffsets));
+    }
+    
+    private static long min(long[] values) {
+        long min = values[0];
+        for (int i = 1; i < values.length; i++) {
+            min = Math.min(min, values[i]);
+        }
+        return min;
+    }
+    
+    private static long max(long[] values) {
+        long max = values[0];
+        for (int i = 1; i < values.length; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return max;
+    }
+}
@@ -132,6 +132,17 @@ public class TestSuiteImpl extends ParamsImpl implements TestSuite {
                      Constants.DEFAULT_REPORTS_DIRECTORY);
         }
 
+        // Check result stream flag and set default if necessary
+        if (!hasParam(Constants.RESULT_STREAM)) {
+            setParam(Constants.RESULT_STREAM, Constants.DEFAULT_RESULT_STREAM);
+        }
+
+        // Check number of parallel drivers and set default if necessary
+        if (!hasParam(Constants.PARALLEL_DRIVERS)) {
+            setParam(Constants.PARALLEL_DRIVERS, 
+                     Constants.DEFAULT_PARALLEL_DRIVERS);
+        }
+
         // Check chart type
         if (!hasParam(Constants.CHART_TYPE)) {
             setParam(Constants.CHART_TYPE,
@@ -203,6 +214,12 @@ public class TestSuiteImpl extends ParamsImpl implements TestSuite {
                 "Parameter 'japex.runsPerDriver' must be at least 1");
         }
 
+        // Set default fraction of run time allowed for thread start skew
+        if (!hasParam(Constants.MAX_START_SKEW)) {
+            setParam(Constants.MAX_START_SKEW, 
+                     Constants.DEFAULT_MAX_START_SKEW);
+        }
+
         // Report error for deprecated parameter but continue
         if (hasParam("japex.includeWarmupRun")) {
             System.err.print("Warning: Parameter 'japex.includeWarmupRun' is deprecated, " +
@@ -0,0 +1,155 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+/**
+ * Per-thread accumulators for the results of a warmup or run phase. Each 
+ * worker thread owns a slot and only writes to that slot, so no locking is
+ * required while a phase is in progress. Slots are padded to keep the 
+ * fields of different threads on different cache lines. The engine resets
+ * the accumulators before a phase and merges all slots once every thread 
+ * has completed it.
+ */
+final class ThreadResults {
+    
+    /**
+     * Offsets of the per-thread fields within a slot of 
+     * <code>_longs</code> and <code>_doubles</code>, respectively.
+     */
+    static final int ITERATIONS = 0;
+    static final int BATCH_SIZE = 1;
+    static final int ALLOCATED_BYTES = 2;
+    static final int CPU_TIME   = 3;
+    static final int USER_TIME  = 4;
+    static final int PROGRESS   = 5;    // iterations so far, read while running
+    static final int STEADY_STATE = 6;  // 1 if adaptive warmup reached steady state
+    static final int TIME       = 0;
+    
+    /**
+     * Number of array elements per slot. Must leave at least 64 bytes of 
+     * padding between the last field of a slot and the next slot.
+     */
+    static final int SLOT_SIZE = 16;
+    
+    final int _nOfThreads;
+    
+    final long[] _longs;
+    
+    final double[] _doubles;
+    
+    ThreadResults(int nOfThreads) {
+        _nOfThreads = nOfThreads;
+        // Leave an extra slot before the first thread as padding
+        _longs = new long[(nOfThreads + 1) * SLOT_SIZE];
+        _doubles = new double[(nOfThreads + 1) * SLOT_SIZE];
+    }
+    
+    static int index(int thread, int field) {
+        return (thread + 1) * SLOT_SIZE + field;
+    }
+    
+    int getNumberOfThreads() {
+        return _nOfThreads;
+    }
+    
+    void reset() {
+        java.util.Arrays.fill(_longs, 0L);
+        java.util.Arrays.fill(_doubles, 0.0);
+    }
+    
+    /**
+     * Add iterations and duration (in millis) to a thread's slot.
+     */
+    void accumulate(int thread, long iterations, double time) {
+        _longs[index(thread, ITERATIONS)] += iterations;
+        _doubles[index(thread, TIME)] += time;
+    }
+    
+    void setLong(int thread, int field, long value) {
+        _longs[index(thread, field)] = value;
+    }
+    
+    long getLong(int thread, int field) {
+        return _longs[index(thread, field)];
+    }
+    
+    long getLongSum(int field) {
+        long sum = 0L;
+        for (int i = 0; i < _nOfThreads; i++) {
+            sum += _longs[index(i, field)];
+        }
+        return sum;
+    }
+    
+    /**
+     * Returns the sum of a field measured by every thread, or -1 if any
+     * thread could not measure it and set it to -1.
+     */
+    long getMeasuredSum(int field) {
+        long sum = 0L;
+        for (int i = 0; i < _nOfThreads; i++) {
+            long value = _longs[index(i, field)];
+            if (value < 0L) {
+                return -1L;
+            }
+            sum += value;
+        }
+        return sum;
+    }
+    
+    long getIterations(int thread) {
+        return _longs[index(thread, ITERATIONS)];
+    }
+    
+    double getTime(int thread) {
+        return _doubles[index(thread, TIME)];
+    }
+    
+    long getIterationsSum() {
+        return getLongSum(ITERATIONS);
+    }
+    
+    double getTimeSum() {
+        double sum = 0.0;
+        for (int i = 0; i < _nOfThreads; i++) {
+            sum += _doubles[index(i, TIME)];
+        }
+        return sum;
+    }
+}
@@ -40,6 +40,9 @@ package com.sun.japex;
 
 import java.io.*;
 import java.util.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.net.URL;
@@ -110,6 +113,83 @@ public class Util {
                 + "' does not conform to pattern '((HH:)?MM:)?S?S'");
     }
     
+    /**
+     * Method <code>getThreadAllocatedBytes(long)</code> of the platform's
+     * ThreadMXBean, available as an extension on HotSpot-based VMs, or 
+     * <code>null</code> if not supported or disabled.
+     */
+    private static final Method threadAllocatedBytes;
+    static {
+        Method method = null;
+        try {
+            ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+            Class<?> extension = Class.forName("com.sun.management.ThreadMXBean");
+            if (extension.isInstance(threadBean)) {
+                Boolean supported = (Boolean) extension.getMethod(
+                    "isThreadAllocatedMemorySupported").invoke(threadBean);
+                Boolean enabled = (Boolean) extension.getMethod(
+                    "isThreadAllocatedMemoryEnabled").invoke(threadBean);
+                if (supported.booleanValue() && enabled.booleanValue()) {
+                    method = extension.getMethod("getThreadAllocatedBytes", long.class);
+                }
+            }
+        }
+        catch (Exception e) {
+            // Falls through, not supported
+        }
+        threadAllocatedBytes = method;
+    }
+    
+    /**
+     * Returns the number of bytes allocated in the heap by the current 
+     * thread since it started, or -1 if the VM cannot measure it.
+     */
+    public static long getThreadAllocatedBytes() {
+        if (threadAllocatedBytes == null) {
+            return -1L;
+        }
+        try {
+            return ((Long) threadAllocatedBytes.invoke(
+                ManagementFactory.getThreadMXBean(), 
+                Long.valueOf(Thread.currentThread().getId()))).longValue();
+        }
+        catch (Exception e) {
+            return -1L;
+        }
+    }
+    
+    /**
+     * Returns the CPU time, in nanos, used by the current thread since it
+     * started, or -1 if the VM cannot measure it for this thread.
+     */
+    public static long getThreadCpuTime() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        try {
+            return threadBean.isCurrentThreadCpuTimeSupported() && 
+                threadBean.isThreadCpuTimeEnabled() ? 
+                    threadBean.getCurrentThreadCpuTime() : -1L;
+        }
+        catch (UnsupportedOperationException e) {
+            return -1L;
+        }
+    }
+    
+    /**
+     * Returns the CPU time, in nanos, used by the current thread in user 
+     * mode since it started, or -1 if the VM cannot measure it.
+     */
+    public static long getThreadUserTime() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        try {
+            return threadBean.isCurrentThreadCpuTimeSupported() && 
+                threadBean.isThreadCpuTimeEnabled() ? 
+                    threadBean.getCurrentThreadUserTime() : -1L;
+        }
+        catch (UnsupportedOperationException e) {
+            return -1L;
+        }
+    }
+    
     public static long currentTimeNanos() {
         return System.nanoTime();
     }
@@ -186,6 +266,321 @@ public class Util {
         return Math.sqrt(variance);
     }
     
+    /**
+     * Returns the p-th quantile (0 &lt;= p &lt;= 1) of a sample, using linear
+     * interpolation between the closest ranks.
+     */
+    public static double percentile(double[] sample, double p) {
+        double[] sorted = sample.clone();
+        Arrays.sort(sorted);
+        double rank = p * (sorted.length - 1);
+        int low = (int) Math.floor(rank);
+        int high = (int) Math.ceil(rank);
+        return sorted[low] + (rank - low) * (sorted[high] - sorted[low]);
+    }
+    
+    public static double median(double[] sample) {
+        return percentile(sample, 0.5);
+    }
+    
+    /**
+     * Returns the median of the absolute deviations from the median of
+     * a sample. Unlike the standard deviation, it is not inflated by a 
+     * few outliers.
+     */
+    public static double medianAbsoluteDeviation(double[] sample) {
+        double median = median(sample);
+        double[] deviations = new double[sample.length];
+        for (int i = 0; i < sample.length; i++) {
+            deviations[i] = Math.abs(sample[i] - median);
+        }
+        return median(deviations);
+    }
+    
+    /**
+     * Returns the Tukey fences of a sample: the first quartile minus and 
+     * the third quartile plus k times the interquartile range. Values 
+     * outside the fences are considered outliers.
+     */
+    public static double[] tukeyFences(double[] sample, double k) {
+        double q1 = percentile(sample, 0.25);
+        double q3 = percentile(sample, 0.75);
+        return new double[] { q1 - k * (q3 - q1), q3 + k * (q3 - q1) };
+    }
+    
+    /**
+     * Returns the percentile bootstrap confidence interval of the mean of
+     * a sample at the given confidence level, as an array holding the 
+     * lower and upper bounds.
+     */
+    public static double[] bootstrapConfidenceInterval(double[] sample, 
+        double confidenceLevel, int resamples, Random random) 
+    {
+        double[] means = new double[resamples];
+        for (int r = 0; r < resamples; r++) {
+            means[r] = resampleMean(sample, random);
+        }
+        return percentileInterval(means, confidenceLevel);
+    }
+    
+    /**
+     * Returns the percentile bootstrap confidence interval of the ratio
+     * of the means of two independent samples, as an array holding the
+     * lower and upper bounds.
+     */
+    public static double[] bootstrapRatioConfidenceInterval(double[] numerator,
+        double[] denominator, double confidenceLevel, int resamples, Random random) 
+    {
+        double[] ratios = new double[resamples];
+        for (int r = 0; r < resamples; r++) {
+            ratios[r] = resampleMean(numerator, random) / 
+                resampleMean(denominator, random);
+        }
+        return percentileInterval(ratios, confidenceLevel);
+    }
+    
+    private static double resampleMean(double[] sample, Random random) {
+        double sum = 0.0;
+        for (int i = 0; i < sample.length; i++) {
+            sum += sample[random.nextInt(sample.length)];
+        }
+        return sum / sample.length;
+    }
+    
+    private static double[] percentileInterval(double[] values, double confidenceLevel) {
+        double alpha = (1.0 - confidenceLevel) / 2.0;
+        return new double[] { 
+            percentile(values, alpha), percentile(values, 1.0 - alpha) 
+        };
+    }
+    
+    /**
+     * Returns the half-width of the confidence interval of the mean of 
+     * the sample starting at <code>start</code>, at the given confidence
+     * level (e.g. 0.95), using the unbiased standard deviation and the 
+     * Student's t-distribution. Returns infinity if the sample has fewer
+     * than two values.
+     */
+    public static double confidenceHalfWidth(double[] sample, int start, 
+        double confidenceLevel) 
+    {
+        int n = sample.length - start;
+        if (n < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double unbiasedStddev = standardDev(sample, start) * Math.sqrt(n / (n - 1.0));
+        return studentTQuantile((1.0 + confidenceLevel) / 2.0, n - 1) 
+            * unbiasedStddev / Math.sqrt(n);
+    }
+    
+    /**
+     * Returns the value t such that P(T &lt;= t) = p for a Student's 
+     * t-distribution with the given degrees of freedom, by bisection 
+     * over its cumulative distribution function.
+     */
+    public static double studentTQuantile(double p, int degreesOfFreedom) {
+        if (p <= 0.0 || p >= 1.0) {
+            throw new IllegalArgumentException("Probability must be in (0, 1)");
+        }
+        if (p < 0.5) {
+            return -studentTQuantile(1.0 - p, degreesOfFreedom);
+        }
+        double low = 0.0, high = 1.0;
+        while (studentTCdf(high, degreesOfFreedom) < p) {
+            low = high;
+            high *= 2.0;
+        }
+        for (int i = 0; i < 100 && high - low > 1e-12 * high; i++) {
+            double mid = (low + high) / 2.0;
+            if (studentTCdf(mid, degreesOfFreedom) < p) {
+                low = mid;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return (low + high) / 2.0;
+    }
+    
+    /**
+     * Returns P(T &lt;= t) for a Student's t-distribution with the given 
+     * degrees of freedom.
+     */
+    public static double studentTCdf(double t, int degreesOfFreedom) {
+        double df = degreesOfFreedom;
+        double tail = 0.5 * regularizedIncompleteBeta(df / (df + t * t), df / 2.0, 0.5);
+        return t > 0.0 ? 1.0 - tail : tail;
+    }
+    
+    /**
+     * Returns the regularized incomplete beta function I_x(a, b), using
+     * its continued fraction representation (modified Lentz's method).
+     */
+    static double regularizedIncompleteBeta(double x, double a, double b) {
+        if (x <= 0.0) {
+            return 0.0;
+        }
+        if (x >= 1.0) {
+            return 1.0;
+        }
+        // The continued fraction converges quickly only below this point
+        if (x > (a + 1.0) / (a + b + 2.0)) {
+            return 1.0 - regularizedIncompleteBeta(1.0 - x, b, a);
+        }
+        double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) 
+            + a * Math.log(x) + b * Math.log(1.0 - x)) / a;
+        
+        final double tiny = 1e-300;
+        double c = 1.0, d = 1.0 - (a + b) * x / (a + 1.0);
+        d = 1.0 / (Math.abs(d) < tiny ? tiny : d);
+        double f = d;
+        for (int m = 1; m <= 300; m++) {
+            // Even step
+            double numerator = m * (b - m) * x / ((a + 2 * m - 1) * (a + 2 * m));
+            d = 1.0 + numerator * d;
+            d = 1.0 / (Math.abs(d) < tiny ? tiny : d);
+            c = 1.0 + numerator / c;
+            c = Math.abs(c) < tiny ? tiny : c;
+            f *= c * d;
+            
+            // Odd step
+            numerator = -(a + m) * (a + b + m) * x / ((a + 2 * m) * (a + 2 * m + 1));
+            d = 1.0 + numerator * d;
+            d = 1.0 / (Math.abs(d) < tiny ? tiny : d);
+            c = 1.0 + numerator / c;
+            c = Math.abs(c) < tiny ? tiny : c;
+            double delta = c * d;
+            f *= delta;
+            if (Math.abs(delta - 1.0) < 1e-15) {
+                break;
+            }
+        }
+        return front * f;
+    }
+    
+    /**
+     * Returns the natural logarithm of the gamma function for x &gt; 0,
+     * using the Lanczos approximation.
+     */
+    static double logGamma(double x) {
+        final double[] coefficients = {
+            76.18009172947146, -86.50532032941677, 24.01409824083091,
+            -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5
+        };
+        double y = x;
+        double tmp = x + 5.5;
+        tmp -= (x + 0.5) * Math.log(tmp);
+        double series = 1.000000000190015;
+        for (int i = 0; i < coefficients.length; i++) {
+            series += coefficients[i] / ++y;
+        }
+        return -tmp + Math.log(2.5066282746310005 * series / x);
+    }
+    
+    /**
+     * Parse the value of japex.threadSweep, a comma-separated list of 
+     * thread counts or ranges of thread counts, and return the sorted 
+     * set of thread counts. A range 'a..b' includes all values from 'a' 
+     * to 'b'; a range 'a..b xN' starts at 'a' and multiplies by 'N' until
+     * reaching 'b', which is always included. The keyword 
+     * 'availableProcessors' may be used in place of any number. Throws
+     * a JapexException naming the first item that is not a positive 
+     * thread count or a valid range.
+     */
+    public static int[] parseThreadSweep(String sweep) {
+        Set<Integer> result = new TreeSet<Integer>();
+        StringTokenizer tokenizer = new StringTokenizer(sweep, ",");
+        while (tokenizer.hasMoreTokens()) {
+            String item = tokenizer.nextToken().trim();
+            try {
+                int k = item.indexOf("..");
+                if (k < 0) {
+                    result.add(parseThreadCount(item));
+                    continue;
+                }
+                
+                int factor = 0;
+                String upper = item.substring(k + 2).trim();
+                int x = upper.lastIndexOf('x');
+                if (x > 0) {
+                    factor = Integer.parseInt(upper.substring(x + 1).trim());
+                    upper = upper.substring(0, x).trim();
+                    if (factor < 2) {
+                        throw new NumberFormatException();
+                    }
+                }
+                
+                int from = parseThreadCount(item.substring(0, k).trim());
+                int to = parseThreadCount(upper);
+                if (to < from) {
+                    throw new NumberFormatException();
+                }
+                for (int n = from; n < to; n = (factor > 0) ? n * factor : n + 1) {
+                    result.add(n);
+                }
+                result.add(to);
+            }
+            catch (NumberFormatException e) {
+                throw new JapexException("Invalid item '" + item 
+                    + "' in parameter 'japex.threadSweep' of value '" + sweep 
+                    + "', must be a positive thread count or a range of the form" 
+                    + " 'a..b' or 'a..b xN' with N at least 2");
+            }
+        }
+        
+        if (result.isEmpty()) {
+            throw new JapexException("Parameter 'japex.threadSweep' of value '"
+                + sweep + "' must contain at least one thread count");
+        }
+        
+        int i = 0;
+        int[] threads = new int[result.size()];
+        for (Integer n : result) {
+            threads[i++] = n;
+        }
+        return threads;
+    }
+    
+    private static int parseThreadCount(String count) {
+        int n = count.equals("availableProcessors") ? 
+            Runtime.getRuntime().availableProcessors() : Integer.parseInt(count);
+        if (n < 1) {
+            throw new NumberFormatException();
+        }
+        return n;
+    }
+    
+    /**
+     * Fit the Universal Scalability Law C(n) = n / (1 + s(n-1) + k n(n-1)),
+     * where C(n) is the speedup with n threads relative to a single
+     * thread, using least squares on its linearized form 
+     * n/C(n) - 1 = s(n-1) + k n(n-1). Returns { s, k }, the contention
+     * and coherency coefficients. If the data is insufficient to fit 
+     * both, k is set to 0 which reduces the model to Amdahl's law.
+     */
+    public static double[] fitUniversalScalability(int[] threads, double[] speedups) {
+        double sxx = 0.0, sxz = 0.0, szz = 0.0, sxy = 0.0, szy = 0.0;
+        for (int i = 0; i < threads.length; i++) {
+            double n = threads[i];
+            double x = n - 1.0;
+            double z = n * (n - 1.0);
+            double y = n / speedups[i] - 1.0;
+            sxx += x * x;
+            sxz += x * z;
+            szz += z * z;
+            sxy += x * y;
+            szy += z * y;
+        }
+        
+        double det = sxx * szz - sxz * sxz;
+        if (Math.abs(det) > 1e-9 * sxx * szz) {
+            return new double[] {
+                (sxy * szz - szy * sxz) / det, (szy * sxx - sxy * sxz) / det
+            };
+        }
+        return new double[] { sxx > 0.0 ? sxy / sxx : Double.NaN, 0.0 };
+    }
+    
     /**
      * Create an instance of <code>DecimalFormat</code> to format numbers
      * as xsd:decimal. That is, using '.' as decimal separator and without
@@ -199,6 +594,19 @@ public class Util {
         _decimalFormat.setGroupingSize(Byte.MAX_VALUE);
     }
     
+    /**
+     * Returns a name with all characters that are not safe in a file 
+     * name replaced by '_'.
+     */
+    public static String toFileName(String name) {
+        StringBuffer buffer = new StringBuffer();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            buffer.append(Character.isLetterOrDigit(c) || c == '-' || c == '.' ? c : '_');
+        }
+        return buffer.toString();
+    }
+    
     public static String formatDouble(double value) {
         return Double.isNaN(value) ? "NaN" : _decimalFormat.format(value);
     }
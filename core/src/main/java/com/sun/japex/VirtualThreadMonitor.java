@@ -0,0 +1,194 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+
+import static com.sun.japex.Constants.*;
+
+/**
+ * Measures the utilization of the carrier threads on which virtual 
+ * threads are scheduled, and the number of times a virtual thread was
+ * pinned to its carrier, during a run phase. Carrier CPU time is obtained
+ * from <code>ThreadMXBean</code> and pinning from JFR events. JFR is 
+ * accessed using reflection, and pinning is not reported if unavailable.
+ */
+final class VirtualThreadMonitor {
+    
+    static final String CARRIER_THREAD_CLASS = "jdk.internal.misc.CarrierThread";
+    static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    
+    ThreadMXBean _threadBean = ManagementFactory.getThreadMXBean();
+    
+    /**
+     * CPU time of each carrier thread at the start of the run phase.
+     */
+    Map<Long, Long> _startCpuTimes = new HashMap<Long, Long>();
+    
+    long _startNanos;
+    
+    /**
+     * JFR recording of pinning events, an instance of 
+     * <code>jdk.jfr.Recording</code>.
+     */
+    Object _recording;
+    
+    void start() {
+        _startCpuTimes.clear();
+        for (Thread t : getCarrierThreads()) {
+            _startCpuTimes.put(t.getId(), _threadBean.getThreadCpuTime(t.getId()));
+        }
+        _recording = startRecording();
+        _startNanos = Util.currentTimeNanos();
+    }
+    
+    /**
+     * Set japex.carrierUtilization as the percentage of the elapsed time
+     * the carrier threads were running, and japex.pinnedEvents.
+     */
+    void stop(TestCaseImpl tc) {
+        long elapsed = Util.currentTimeNanos() - _startNanos;
+        
+        if (_threadBean.isThreadCpuTimeSupported() && elapsed > 0) {
+            long cpuTime = 0L;
+            for (Thread t : getCarrierThreads()) {
+                long time = _threadBean.getThreadCpuTime(t.getId());
+                if (time < 0) {
+                    continue;       // Terminated or disabled
+                }
+                Long start = _startCpuTimes.get(t.getId());
+                cpuTime += (start != null && start >= 0) ? time - start : time;
+            }
+            tc.setDoubleParam(CARRIER_UTILIZATION, 
+                100.0 * cpuTime / ((double) elapsed * getParallelism()));
+        }
+        
+        if (_recording != null) {
+            long pinned = stopRecording(_recording);
+            if (pinned >= 0) {
+                tc.setLongParam(PINNED_EVENTS, pinned);
+            }
+            _recording = null;
+        }
+    }
+    
+    static List<Thread> getCarrierThreads() {
+        List<Thread> result = new ArrayList<Thread>();
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getClass().getName().equals(CARRIER_THREAD_CLASS)) {
+                result.add(t);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the number of carrier threads of the default scheduler.
+     */
+    static int getParallelism() {
+        String parallelism = System.getProperty("jdk.virtualThreadScheduler.parallelism");
+        if (parallelism != null) {
+            try {
+                return Integer.parseInt(parallelism);
+            }
+            catch (NumberFormatException e) {
+                // Falls through
+            }
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+    
+    /**
+     * Start a JFR recording of all pinning events, regardless of their
+     * duration. Returns null if JFR is not available.
+     */
+    static Object startRecording() {
+        try {
+            Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+            Object recording = recordingClass.newInstance();
+            Object settings = recordingClass.getMethod("enable", String.class)
+                .invoke(recording, PINNED_EVENT);
+            Class.forName("jdk.jfr.EventSettings")
+                .getMethod("withThreshold", Class.forName("java.time.Duration"))
+                .invoke(settings, new Object[] { null });
+            recordingClass.getMethod("start").invoke(recording);
+            return recording;
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Stop a recording and return the number of events in it, or -1 if 
+     * they could not be read.
+     */
+    static long stopRecording(Object recording) {
+        File file = null;
+        try {
+            Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+            Class<?> pathClass = Class.forName("java.nio.file.Path");
+            recordingClass.getMethod("stop").invoke(recording);
+            
+            file = File.createTempFile("japex", ".jfr");
+            Object path = File.class.getMethod("toPath").invoke(file);
+            recordingClass.getMethod("dump", pathClass).invoke(recording, path);
+            List<?> events = (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile")
+                .getMethod("readAllEvents", pathClass).invoke(null, path);
+            return events.size();
+        }
+        catch (Exception e) {
+            return -1L;
+        }
+        finally {
+            try {
+                Class.forName("jdk.jfr.Recording").getMethod("close").invoke(recording);
+            }
+            catch (Exception e) {
+                // Falls through
+            }
+            if (file != null) {
+                file.delete();
+            }
+        }
+    }
+}
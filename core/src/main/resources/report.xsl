@@ -52,6 +52,16 @@
                 <br/><br/>
                 <center><img src="{/*/extrep:resultChart}"/></center>
                 <br/><br/>
+
+                <!-- Generate scalability charts if drivers were swept over threads -->
+                <xsl:if test="/*/extrep:threadSweepChart">
+                    <h2>Results Per Number of Threads</h2>
+                    <br/>
+                    <xsl:for-each select="/*/extrep:threadSweepChart">
+                        <center><img src="{.}"/></center>
+                        <br/><br/>
+                    </xsl:for-each>
+                </xsl:if>
       
                 <!-- Generate detailed result per driver -->
                 <xsl:for-each select="rep:driver">
@@ -116,6 +126,9 @@
                                             <xsl:when test="$value = 'NaN'">
                                                 <font color="red"><xsl:value-of select="$value"/></font>
                                             </xsl:when>
+                                            <xsl:when test="local-name() = 'jfrFile' or local-name() = 'flameGraph'">
+                                                <a href="{$value}"><xsl:value-of select="$value"/></a>
+                                            </xsl:when>
                                             <xsl:otherwise>
                                                 <xsl:value-of select="$value"/>
                                             </xsl:otherwise>
@@ -169,7 +182,15 @@
             <tbody>
                 <xsl:for-each select="rep:testCase">
                     <tr><td align="right">
-                        <xsl:value-of select="@name"/></td>
+                        <xsl:choose>
+                            <!-- Flag results measured while the JIT was active -->
+                            <xsl:when test="rep:jitSuspect = 'true'">
+                                <font color="red"><xsl:value-of select="@name"/>*</font>
+                            </xsl:when>
+                            <xsl:otherwise>
+                                <xsl:value-of select="@name"/>
+                            </xsl:otherwise>
+                        </xsl:choose></td>
                         <xsl:for-each select="*[namespace-uri(.)!='']">
                             <td align="right"><nobr>                          
                                 <xsl:variable name="value" select="."/>
@@ -177,6 +198,9 @@
                                     <xsl:when test="$value = 'NaN'">
                                         <font color="red"><xsl:value-of select="$value"/></font>
                                     </xsl:when>
+                                    <xsl:when test="local-name() = 'jfrFile' or local-name() = 'flameGraph'">
+                                        <a href="{$value}"><xsl:value-of select="$value"/></a>
+                                    </xsl:when>
                                     <xsl:otherwise>
                                         <xsl:value-of select="$value"/>
                                     </xsl:otherwise>
@@ -190,6 +214,10 @@
                 </xsl:for-each>
             </tbody>
         </table>
+        <xsl:if test="rep:testCase[rep:jitSuspect = 'true']">
+            <p><font color="red">*</font> JIT compilation took place during the run phase 
+            of this test in at least one run; its result may not be accurate.</p>
+        </xsl:if>
         <br/>
     </xsl:template>
 
@@ -0,0 +1,136 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+import org.junit.Test;
+
+import static com.sun.japex.Constants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class DriverImplTest {
+    
+    /**
+     * Returns a driver with a test case for each array of results, one 
+     * result per run, taking one second and 100 iterations per run.
+     */
+    static DriverImpl newDriver(boolean rejectOutliers, double[]... results) {
+        ParamsImpl global = new ParamsImpl();
+        global.setIntParam(RUNS_PER_DRIVER, results[0].length);
+        global.setIntParam(WARMUPS_PER_DRIVER, 0);
+        global.setBooleanParam(REJECT_OUTLIERS, rejectOutliers);
+        
+        DriverImpl driver = new DriverImpl("driver", false, global);
+        TestCaseArrayList testCases = new TestCaseArrayList();
+        for (int n = 0; n < results.length; n++) {
+            testCases.add(new TestCaseImpl("test" + n, driver));
+        }
+        driver.setTestCases(testCases);
+        
+        for (int n = 0; n < results.length; n++) {
+            for (int i = 0; i < results[n].length; i++) {
+                TestCaseImpl tc = driver.getTestCases(i).get(n);
+                tc.setDoubleParam(RESULT_VALUE, results[n][i]);
+                tc.setDoubleParam(ACTUAL_RUN_TIME, 1000.0);
+                tc.setLongParam(RUN_ITERATIONS_SUM, 100L);
+            }
+        }
+        return driver;
+    }
+    
+    @Test
+    public void testStddevOfRunMeans() {
+        // Means of each run are all 20 although each test varies
+        DriverImpl driver = newDriver(false, 
+            new double[] { 10.0, 20.0, 30.0 }, new double[] { 30.0, 20.0, 10.0 });
+        driver.getAggregateTestCases();
+        
+        assertEquals(20.0, driver.getDoubleParam(RESULT_ARIT_MEAN), 1e-12);
+        assertEquals(0.0, driver.getDoubleParam(RESULT_ARIT_MEAN_STDDEV), 1e-12);
+        
+        // Geometric means of the runs are sqrt(300), 20 and sqrt(300)
+        double[] geomMeans = { Math.sqrt(300.0), 20.0, Math.sqrt(300.0) };
+        assertEquals(Util.standardDev(geomMeans), 
+            driver.getDoubleParam(RESULT_GEOM_MEAN_STDDEV), 1e-9);
+    }
+    
+    @Test
+    public void testRejectOutliers() {
+        DriverImpl driver = newDriver(true, 
+            new double[] { 10.0, 10.0, 11.0, 10.0, 100.0 });
+        TestCaseImpl outlier = driver.getTestCases(4).get(0);
+        outlier.setDoubleParam(ACTUAL_RUN_TIME, 5000.0);
+        outlier.setLongParam(RUN_ITERATIONS_SUM, 1000L);
+        
+        TestCaseImpl tc = driver.getAggregateTestCases().get(0);
+        assertEquals("5", tc.getParam(REJECTED_RUNS));
+        assertEquals(10.25, tc.getDoubleParam(RESULT_VALUE), 1e-12);
+        assertEquals(1.0, tc.getDoubleParam(RESULT_TIME), 1e-12);
+        assertEquals(100.0, tc.getDoubleParam(RESULT_ITERATIONS), 1e-12);
+        
+        double[] measured = { 10.0, 10.0, 11.0, 10.0 };
+        assertEquals(Util.confidenceHalfWidth(measured, 0, 0.95) / 10.25, 
+            driver.getMaxRelativeError(), 1e-12);
+    }
+    
+    @Test
+    public void testRejectOutliersFromAllAggregates() {
+        DriverImpl driver = newDriver(true, 
+            new double[] { 10.0, 10.0, 11.0, 10.0, 100.0 },
+            new double[] { 20.0, 22.0, 21.0, 20.0, 21.0 });
+        for (int i = 0; i < 5; i++) {
+            TestCaseImpl tc = driver.getTestCases(i).get(0);
+            tc.setDoubleParam(LATENCY_P99, i < 4 ? 2.0 : 50.0);
+            tc.setDoubleParam(LATENCY_MAX, i < 4 ? 3.0 : 90.0);
+            tc.setDoubleParam(GC_PARAM_PREFIX + "PauseMax", i < 4 ? 1.0 : 40.0);
+            tc.setBooleanParam(JIT_SUSPECT, i == 4);
+        }
+        
+        TestCaseImpl tc = driver.getAggregateTestCases().get(0);
+        assertEquals(2.0, tc.getDoubleParam(LATENCY_P99), 1e-12);
+        assertEquals(3.0, tc.getDoubleParam(LATENCY_MAX), 1e-12);
+        assertEquals(1.0, tc.getDoubleParam(GC_PARAM_PREFIX + "PauseMax"), 1e-12);
+        assertFalse(tc.getBooleanParam(JIT_SUSPECT));
+        
+        // Run 5 is excluded from the stddevs of the means of each run
+        double[] aritMeans = { 15.0, 16.0, 16.0, 15.0 };
+        assertEquals(Util.standardDev(aritMeans), 
+            driver.getDoubleParam(RESULT_ARIT_MEAN_STDDEV), 1e-12);
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JapexCoordinatorTest {
+    
+    static final String TOKEN = "secret";
+    
+    /**
+     * Unit that asks the worker to run and records how it completed.
+     */
+    static class TestUnit extends JapexCoordinator.WorkUnit {
+        
+        String _workerName;
+        int _exitCode = Integer.MIN_VALUE;
+        
+        TestUnit() {
+            super(null, new int[0]);
+        }
+        
+        int run(BufferedReader reader, PrintWriter writer) throws IOException {
+            writer.println(JapexFork.PREFIX + "run");
+            writer.flush();
+            String line = reader.readLine();
+            if (line == null) {
+                throw new IOException("Connection to worker closed");
+            }
+            return Integer.parseInt(line.substring((JapexFork.PREFIX + "exit ").length()));
+        }
+        
+        void completed(String workerName, int exitCode) {
+            _workerName = workerName;
+            _exitCode = exitCode;
+        }
+    }
+    
+    /**
+     * Worker that answers every unit with exit code 0, or closes its 
+     * connection after the given number of units.
+     */
+    static class TestWorker extends Thread {
+        
+        int _port;
+        String _name;
+        String _token;
+        int _maxUnits;
+        List<String> _executed = Collections.synchronizedList(new ArrayList<String>());
+        
+        /**
+         * Counted down once the worker has received its first unit.
+         */
+        CountDownLatch _received = new CountDownLatch(1);
+        
+        /**
+         * If set, latch awaited before connecting and worker awaited 
+         * before answering the first unit.
+         */
+        CountDownLatch _awaitBeforeConnect;
+        Thread _awaitBeforeAnswer;
+        
+        TestWorker(int port, String name, String token, int maxUnits) {
+            _port = port;
+            _name = name;
+            _token = token;
+            _maxUnits = maxUnits;
+            setDaemon(true);
+        }
+        
+        public void run() {
+            try {
+                if (_awaitBeforeConnect != null) {
+                    _awaitBeforeConnect.await();
+                }
+                Socket socket = new Socket("localhost", _port);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), JapexFork.ENCODING));
+                PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                    socket.getOutputStream(), JapexFork.ENCODING));
+                writer.println(JapexFork.PREFIX + "worker " + _name + " " + _token);
+                writer.flush();
+                
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.equals(JapexFork.PREFIX + "run")) {
+                        _received.countDown();
+                        if (_awaitBeforeAnswer != null) {
+                            _awaitBeforeAnswer.join();
+                            _awaitBeforeAnswer = null;
+                        }
+                        if (_executed.size() == _maxUnits) {
+                            break;
+                        }
+                        _executed.add(line);
+                        writer.println(JapexFork.PREFIX + "exit 0");
+                        writer.flush();
+                    }
+                }
+                socket.close();
+            }
+            catch (IOException e) {
+                // Coordinator has been closed
+            }
+            catch (InterruptedException e) {
+                // Test has completed
+            }
+        }
+    }
+    
+    static List<TestUnit> newUnits(int n) {
+        List<TestUnit> units = new ArrayList<TestUnit>();
+        for (int i = 0; i < n; i++) {
+            units.add(new TestUnit());
+        }
+        return units;
+    }
+    
+    static JapexCoordinator newCoordinator() throws IOException {
+        return new JapexCoordinator(null, 0, TOKEN, 
+            new PrintWriter(new StringWriter()));
+    }
+    
+    @Test(timeout = 30000)
+    public void testSeveralWorkers() throws Exception {
+        JapexCoordinator coordinator = newCoordinator();
+        try {
+            List<TestWorker> workers = new ArrayList<TestWorker>();
+            for (int i = 0; i < 3; i++) {
+                TestWorker worker = new TestWorker(coordinator.getPort(), 
+                    "worker" + i, TOKEN, Integer.MAX_VALUE);
+                worker.start();
+                workers.add(worker);
+            }
+            
+            List<TestUnit> units = newUnits(20);
+            coordinator.execute(units);
+            
+            for (TestUnit unit : units) {
+                assertEquals(0, unit._exitCode);
+                assertTrue(unit._workerName.startsWith("worker"));
+            }
+            int executed = 0;
+            for (TestWorker worker : workers) {
+                worker.join();
+                executed += worker._executed.size();
+            }
+            assertEquals(20, executed);
+        }
+        finally {
+            coordinator.close();
+        }
+    }
+    
+    @Test(timeout = 30000)
+    public void testLostWorker() throws Exception {
+        JapexCoordinator coordinator = newCoordinator();
+        try {
+            // Worker holds its first unit until the other worker, which
+            // is lost at its third unit, has terminated
+            TestWorker worker = new TestWorker(coordinator.getPort(), "worker", TOKEN, 
+                Integer.MAX_VALUE);
+            TestWorker lost = new TestWorker(coordinator.getPort(), "lost", TOKEN, 2);
+            lost._awaitBeforeConnect = worker._received;
+            worker._awaitBeforeAnswer = lost;
+            worker.start();
+            lost.start();
+            
+            List<TestUnit> units = newUnits(5);
+            coordinator.execute(units);
+            for (TestUnit unit : units) {
+                assertEquals(0, unit._exitCode);
+            }
+            assertEquals(2, lost._executed.size());
+            assertEquals(3, worker._executed.size());
+        }
+        finally {
+            coordinator.close();
+        }
+    }
+    
+    @Test(timeout = 30000)
+    public void testAllWorkersLost() throws Exception {
+        JapexCoordinator coordinator = newCoordinator();
+        try {
+            TestWorker worker = new TestWorker(coordinator.getPort(), "worker", TOKEN, 2);
+            worker.start();
+            
+            List<TestUnit> units = newUnits(5);
+            coordinator.execute(units);
+            int failed = 0;
+            for (TestUnit unit : units) {
+                failed += (unit._exitCode == -1) ? 1 : 0;
+            }
+            assertEquals(3, failed);
+        }
+        finally {
+            coordinator.close();
+        }
+    }
+    
+    @Test(timeout = 30000)
+    public void testInvalidToken() throws Exception {
+        JapexCoordinator coordinator = newCoordinator();
+        TestWorker intruder = new TestWorker(coordinator.getPort(), "intruder", 
+            "wrong", Integer.MAX_VALUE);
+        try {
+            intruder.start();
+            TestWorker worker = new TestWorker(coordinator.getPort(), "worker", TOKEN, 
+                Integer.MAX_VALUE);
+            worker.start();
+            
+            List<TestUnit> units = newUnits(3);
+            coordinator.execute(units);
+            for (TestUnit unit : units) {
+                assertEquals("worker", unit._workerName);
+            }
+        }
+        finally {
+            coordinator.close();
+        }
+        intruder.join();
+        assertEquals(0, intruder._executed.size());
+    }
+}
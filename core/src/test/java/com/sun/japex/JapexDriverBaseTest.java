@@ -0,0 +1,88 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class JapexDriverBaseTest {
+    
+    /**
+     * Driver whose calls take about 2 ms.
+     */
+    static class SlowDriver extends JapexDriverBase {
+        public void run(TestCase testCase) {
+            try {
+                Thread.sleep(2L);
+            }
+            catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+    
+    @Test
+    public void testOpenLoopSlowerThanTargetRate() {
+        // One call per millisecond for 200 ms, each taking about 2 ms
+        TestCaseImpl tc = new TestCaseImpl("test", new ParamsImpl(new ParamsImpl()));
+        tc.setDoubleParam(Constants.TARGET_RATE, 1000.0);
+        tc.setParam(Constants.RUN_TIME, "200");
+        
+        JapexDriverBase driver = new SlowDriver();
+        driver.setThreadResults(new ThreadResults(1), 0);
+        driver.setTestCase(tc);
+        driver._latencyHistogram = new LatencyHistogram();
+        
+        double startTime = Util.currentTimeMillis();
+        driver.setEndTime(startTime + 200.0);
+        long calls = driver.runOpenLoop(tc);
+        double duration = Util.currentTimeMillis() - startTime;
+        
+        // Phase ends at about japex.runTime rather than clearing the backlog
+        assertTrue("duration " + duration, duration >= 190.0 && duration < 300.0);
+        assertTrue("calls " + calls, calls < 150);
+        
+        // Missed calls are included in the corrected histogram
+        LatencyHistogram corrected = driver.getCorrectedHistogram();
+        assertTrue(corrected.getTotalCount() > calls);
+        assertTrue(corrected.getValueAtPercentile(99.0) > 
+            driver.getLatencyHistogram().getValueAtPercentile(99.0));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+    
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100000; value++) {
+            histogram.recordValue(value);
+        }
+        
+        assertEquals(100000L, histogram.getTotalCount());
+        assertEquals(1L, histogram.getMin());
+        assertEquals(100000L, histogram.getMax());
+        assertEquals(50000.5, histogram.getMean(), 1e-9);
+        assertEquals(100000L, histogram.getValueAtPercentile(100.0));
+        
+        double[] percentiles = { 50.0, 90.0, 99.0, 99.9 };
+        for (double p : percentiles) {
+            double expected = p * 1000.0;
+            long value = histogram.getValueAtPercentile(p);
+            assertTrue(value >= expected);
+            assertTrue((value - expected) / expected < 0.01);
+        }
+    }
+    
+    @Test
+    public void testRelativeError() {
+        // Values below the number of sub-buckets are exact
+        for (long value = 0; value < LatencyHistogram.SUB_BUCKET_COUNT; value++) {
+            assertEquals(value, LatencyHistogram.highestEquivalentValue(
+                LatencyHistogram.bucketIndex(value)));
+        }
+        
+        // Larger values are off by at most 1/128 of their value
+        Random random = new Random(42L);
+        for (int i = 0; i < 100000; i++) {
+            long value = (long) Math.exp(random.nextDouble() 
+                * Math.log(LatencyHistogram.MAX_VALUE));
+            long highest = LatencyHistogram.highestEquivalentValue(
+                LatencyHistogram.bucketIndex(value));
+            assertTrue(highest >= value);
+            assertTrue(highest - value <= value / 128);
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, 
+            LatencyHistogram.bucketIndex(LatencyHistogram.MAX_VALUE));
+    }
+    
+    @Test
+    public void testAddAndReset() {
+        LatencyHistogram h1 = new LatencyHistogram();
+        LatencyHistogram h2 = new LatencyHistogram();
+        h1.recordValue(1000L, 3L);
+        h2.recordValue(10L);
+        h2.recordValue(LatencyHistogram.MAX_VALUE + 1L);
+        h1.add(h2);
+        
+        assertEquals(5L, h1.getTotalCount());
+        assertEquals(10L, h1.getMin());
+        assertEquals(LatencyHistogram.MAX_VALUE, h1.getMax());
+        assertEquals(10L, h1.getValueAtPercentile(20.0));
+        assertTrue(Math.abs(h1.getValueAtPercentile(80.0) - 1000L) <= 1000L / 128);
+        
+        h1.reset();
+        assertEquals(0L, h1.getTotalCount());
+        assertEquals(0L, h1.getValueAtPercentile(99.0));
+        assertTrue(Double.isNaN(h1.getMean()));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParamSnapshotTest {
+    
+    static final ParamKey<Long> SIZE = ParamKey.longKey("test.size");
+    static final ParamKey<Double> RATIO = ParamKey.doubleKey("test.ratio");
+    static final ParamKey<Boolean> ENABLED = ParamKey.booleanKey("test.enabled");
+    static final ParamKey<String> NAME = ParamKey.stringKey("test.name");
+    static final ParamKey<Integer> MISSING = ParamKey.intKey("test.missing");
+    
+    @Test
+    public void testGet() {
+        ParamsImpl global = new ParamsImpl();
+        global.setParam("test.size", "10");
+        global.setParam("test.name", "global");
+        ParamsImpl driver = new ParamsImpl(global);
+        driver.setParam("test.ratio", "0.5");
+        ParamsImpl testCase = new ParamsImpl(driver);
+        testCase.setParam("test.enabled", "true");
+        testCase.setParam("test.name", "local");
+        
+        ParamSnapshot snapshot = ParamSnapshot.freeze(testCase, driver);
+        assertTrue(snapshot.has(SIZE));
+        assertEquals(10L, snapshot.getLong(SIZE));
+        assertEquals(0.5, snapshot.getDouble(RATIO), 0.0);
+        assertTrue(snapshot.getBoolean(ENABLED));
+        assertEquals("local", snapshot.getString(NAME));
+    }
+    
+    @Test
+    public void testMissingKey() {
+        ParamSnapshot snapshot = ParamSnapshot.freeze(new ParamsImpl());
+        assertFalse(snapshot.has(MISSING));
+        assertEquals(0, snapshot.getInt(MISSING));
+        assertTrue(Double.isNaN(snapshot.getDouble(RATIO)));
+        assertFalse(snapshot.getBoolean(ENABLED));
+        assertNull(snapshot.getString(NAME));
+    }
+    
+    @Test
+    public void testLateKey() {
+        ParamsImpl params = new ParamsImpl();
+        params.setParam("test.late", "1");
+        ParamSnapshot snapshot = ParamSnapshot.freeze(params);
+        
+        ParamKey<Long> late = ParamKey.longKey("test.late");
+        assertFalse(snapshot.has(late));
+        try {
+            snapshot.getLong(late);
+            fail("Expected JapexException");
+        }
+        catch (JapexException e) {
+            assertTrue(e.getMessage().indexOf("test.late") >= 0);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static com.sun.japex.Constants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResultStreamListenerTest {
+    
+    static File newFile() throws IOException {
+        File file = File.createTempFile("results", ".jsonl");
+        file.delete();
+        file.deleteOnExit();
+        return file;
+    }
+    
+    static DriverImpl newDriver(String name) {
+        ParamsImpl global = new ParamsImpl();
+        global.setIntParam(WARMUPS_PER_DRIVER, 1);
+        return new DriverImpl(name, false, global);
+    }
+    
+    @Test
+    public void testRoundTrip() throws IOException {
+        DriverImpl driver = newDriver("driver \"1\"");
+        TestCaseImpl tc = new TestCaseImpl("test\\case \u00e9\u65e5\u672c", driver);
+        tc.setDoubleParam(RESULT_VALUE, 12.5);
+        tc.setLongParam(RUN_ITERATIONS_SUM, 1000L);
+        tc.setBooleanParam(JIT_SUSPECT, true);
+        tc.setDoubleParam(LATENCY_P99, Double.NaN);
+        tc.setDoubleParam(LATENCY_MAX, Double.POSITIVE_INFINITY);
+        tc.setDoubleParam(LATENCY_MEAN, Double.NEGATIVE_INFINITY);
+        tc.setParam("test.text", "say \"hi\"\n\tto \u00fcber \u2713 \u0001");
+        tc.setParam("test.number", "1e3");
+        
+        File file = newFile();
+        ResultStreamListener listener = new ResultStreamListener(file);
+        listener.testCaseCompleted(driver, 2, tc);
+        listener.close();
+        
+        Map<String, Map<String, String>> results = ResultStreamListener.read(file);
+        assertEquals(1, results.size());
+        Map<String, String> params = results.get(
+            ResultStreamListener.getKey(driver.getName(), 2, tc.getName()));
+        for (String name : tc.getLocalParams()) {
+            assertEquals(tc.getRawParam(name), params.get(name));
+        }
+        assertEquals(tc.getLocalParams().size(), params.size());
+        
+        // Values are restored with the same type when resuming
+        TestCaseImpl resumed = new TestCaseImpl(tc.getName(), driver);
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            resumed.setRawParam(param.getKey(), param.getValue());
+        }
+        assertEquals(12.5, resumed.getDoubleParam(RESULT_VALUE), 0.0);
+        assertEquals(1000L, resumed.getLongParam(RUN_ITERATIONS_SUM));
+        assertTrue(resumed.getBooleanParam(JIT_SUSPECT));
+        assertTrue(Double.isNaN(resumed.getDoubleParam(LATENCY_P99)));
+        assertEquals(Double.POSITIVE_INFINITY, resumed.getDoubleParam(LATENCY_MAX), 0.0);
+        assertEquals(Double.NEGATIVE_INFINITY, resumed.getDoubleParam(LATENCY_MEAN), 0.0);
+        assertEquals(tc.getParam("test.text"), resumed.getParam("test.text"));
+    }
+    
+    @Test
+    public void testResumeSkipsIncompleteRecords() throws IOException {
+        DriverImpl driver = newDriver("driver");
+        TestCaseImpl tc1 = new TestCaseImpl("test1", driver);
+        TestCaseImpl tc2 = new TestCaseImpl("test2", driver);
+        
+        File file = newFile();
+        ResultStreamListener listener = new ResultStreamListener(file);
+        tc1.setDoubleParam(RESULT_VALUE, 1.0);
+        listener.testCaseCompleted(driver, 0, tc1);
+        tc2.setDoubleParam(RESULT_VALUE, 2.0);
+        listener.testCaseCompleted(driver, 0, tc2);
+        
+        // A later record of the same test case and run replaces the earlier one
+        tc1.setDoubleParam(RESULT_VALUE, 3.0);
+        listener.testCaseCompleted(driver, 0, tc1);
+        listener.testCaseCompleted(driver, 1, tc1);
+        listener.close();
+        
+        // Records truncated by a crash or otherwise malformed are skipped
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write("{\"driver\":\"driver\",\"run\":1,\"testCase\":\"test2\",\"par"
+                .getBytes("UTF-8"));
+            out.write("\n{\"driver\":\"driver\",\"run\":2,\"testCase\":\"test1\",\"params\":{\"x\":abc}}\n"
+                .getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+        
+        Map<String, Map<String, String>> results = ResultStreamListener.read(file);
+        assertEquals(3, results.size());
+        assertEquals("3.0", results.get(ResultStreamListener.getKey("driver", 0, "test1"))
+            .get(RESULT_VALUE));
+        assertEquals("2.0", results.get(ResultStreamListener.getKey("driver", 0, "test2"))
+            .get(RESULT_VALUE));
+        assertEquals("3.0", results.get(ResultStreamListener.getKey("driver", 1, "test1"))
+            .get(RESULT_VALUE));
+        assertNull(results.get(ResultStreamListener.getKey("driver", 1, "test2")));
+        assertNull(results.get(ResultStreamListener.getKey("driver", 2, "test1")));
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Japex software ("Software")
+ *
+ * Copyright, 2004-2007 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Software is licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations.
+ *
+ *    Sun supports and benefits from the global community of open source
+ * developers, and thanks the community for its important contributions and
+ * open standards-based technology, which Sun has adopted into many of its
+ * products.
+ *
+ *    Please note that portions of Software may be provided with notices and
+ * open source licenses from such communities and third parties that govern the
+ * use of those portions, and any licenses granted hereunder do not alter any
+ * rights and obligations you may have under such open source licenses,
+ * however, the disclaimer of warranty and limitation of liability provisions
+ * in this License will apply to all Software in this distribution.
+ *
+ *    You acknowledge that the Software is not designed, licensed or intended
+ * for use in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ */
+
+package com.sun.japex;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UtilTest {
+    
+    @Test
+    public void testPercentile() {
+        assertEquals(2.0, Util.median(new double[] { 3.0, 1.0, 2.0 }), 0.0);
+        assertEquals(1.75, Util.percentile(new double[] { 4.0, 3.0, 2.0, 1.0 }, 0.25), 1e-12);
+    }
+    
+    @Test
+    public void testStudentTQuantile() {
+        // Two-sided 95% critical values from standard tables
+        assertEquals(12.7062, Util.studentTQuantile(0.975, 1), 1e-4);
+        assertEquals(2.7764, Util.studentTQuantile(0.975, 4), 1e-4);
+        assertEquals(2.2281, Util.studentTQuantile(0.975, 10), 1e-4);
+        assertEquals(2.0423, Util.studentTQuantile(0.975, 30), 1e-4);
+        assertEquals(-2.2281, Util.studentTQuantile(0.025, 10), 1e-4);
+        assertEquals(0.5, Util.studentTCdf(0.0, 5), 1e-12);
+    }
+    
+    @Test
+    public void testConfidenceHalfWidth() {
+        // Sample stddev is sqrt(2.5) and t(0.975, 4) is 2.7764
+        double[] sample = { 1.0, 2.0, 3.0, 4.0, 5.0 };
+        assertEquals(2.7764 * Math.sqrt(2.5) / Math.sqrt(5.0), 
+            Util.confidenceHalfWidth(sample, 0, 0.95), 1e-3);
+        assertEquals(Double.POSITIVE_INFINITY, 
+            Util.confidenceHalfWidth(sample, 4, 0.95), 0.0);
+    }
+    
+    @Test
+    public void testBootstrapConfidenceInterval() {
+        // Every resample of a constant sample has the same mean
+        double[] constant = { 5.0, 5.0, 5.0, 5.0 };
+        double[] interval = Util.bootstrapConfidenceInterval(constant, 0.95, 
+            1000, new Random(0L));
+        assertEquals(5.0, interval[0], 1e-12);
+        assertEquals(5.0, interval[1], 1e-12);
+        
+        // Interval of the mean lies within the range of the sample
+        double[] sample = { 1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0, 9.0, 10.0 };
+        interval = Util.bootstrapConfidenceInterval(sample, 0.95, 
+            1000, new Random(0L));
+        assertTrue(interval[0] > 1.0 && interval[0] < 5.5);
+        assertTrue(interval[1] > 5.5 && interval[1] < 10.0);
+        
+        interval = Util.bootstrapRatioConfidenceInterval(
+            new double[] { 4.0, 4.0 }, new double[] { 2.0, 2.0 }, 0.95, 
+            1000, new Random(0L));
+        assertEquals(2.0, interval[0], 1e-12);
+        assertEquals(2.0, interval[1], 1e-12);
+    }
+    
+    @Test
+    public void testTukeyFences() {
+        // Quartiles are 3 and 7, so the interquartile range is 4
+        double[] sample = { 1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0, 9.0 };
+        double[] fences = Util.tukeyFences(sample, 1.5);
+        assertEquals(-3.0, fences[0], 1e-12);
+        assertEquals(13.0, fences[1], 1e-12);
+    }
+    
+    @Test
+    public void testParseThreadSweep() {
+        assertArrayEquals(new int[] { 1, 2, 4 }, Util.parseThreadSweep("4, 1,2,1"));
+        assertArrayEquals(new int[] { 1, 2, 3, 4 }, Util.parseThreadSweep("1..4"));
+        assertArrayEquals(new int[] { 1, 2, 4, 8, 16, 20 }, 
+            Util.parseThreadSweep("1..20 x2"));
+        assertArrayEquals(new int[] { 2, 3, 6 }, Util.parseThreadSweep("6, 2..3"));
+        assertArrayEquals(new int[] { Runtime.getRuntime().availableProcessors() }, 
+            Util.parseThreadSweep("availableProcessors"));
+        
+        String[] invalid = { "1,2,foo", "0", "-1", "4..2", "1..8 x1", "1..", ",", "" };
+        for (String sweep : invalid) {
+            try {
+                Util.parseThreadSweep(sweep);
+                fail("Sweep '" + sweep + "' should be rejected");
+            }
+            catch (JapexException e) {
+                // Expected
+            }
+        }
+    }
+    
+    @Test
+    public void testFitUniversalScalability() {
+        // Speedups that follow the law exactly are fitted exactly
+        double s = 0.05, k = 0.001;
+        int[] threads = { 1, 2, 4, 8, 16, 32 };
+        double[] speedups = new double[threads.length];
+        for (int i = 0; i < threads.length; i++) {
+            double n = threads[i];
+            speedups[i] = n / (1.0 + s * (n - 1.0) + k * n * (n - 1.0));
+        }
+        double[] coefficients = Util.fitUniversalScalability(threads, speedups);
+        assertEquals(s, coefficients[0], 1e-9);
+        assertEquals(k, coefficients[1], 1e-9);
+        
+        // With a single count besides 1, only Amdahl's law can be fitted
+        coefficients = Util.fitUniversalScalability(
+            new int[] { 1, 2 }, new double[] { 1.0, 2.0 / 1.1 });
+        assertEquals(0.1, coefficients[0], 1e-9);
+        assertEquals(0.0, coefficients[1], 0.0);
+    }
+}
@@ -110,6 +110,14 @@ public class JapexMojo extends AbstractMojo {
         Japex.silent = silent;
         Japex.verbose = verbose;
         japex.setOutputDirectory(reportDirectory);
+        
+        // Log each result as soon as it is measured
+        japex.addEngineListener(new EngineListenerAdapter() {
+            public void testCaseCompleted(Driver driver, int run, TestCase testCase) {
+                getLog().info(driver.getName() + " run " + (run + 1) + " " 
+                    + testCase.getName() + ": " + testCase.getParam(Constants.RESULT_VALUE));
+            }
+        });
 
         // we need a class loader for the test class path. Let's try the simple solution.
         URL[] testClasspathUrls;
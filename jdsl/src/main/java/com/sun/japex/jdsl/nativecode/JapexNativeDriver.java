@@ -84,7 +84,8 @@ public class JapexNativeDriver extends JapexDriverBase {
      * Execute the run phase. This method can be executed concurrently
      * by multiple threads. Care should be taken to ensure proper
      * synchronization. Note that parameter getters and setters are
-     * already synchronized.
+     * already synchronized, and that results are accumulated per thread
+     * using <code>accumulateResult()</code>.
      *
      * This method defers to simple native methods that perform the
      * work of the loop (for time or for iterations).
@@ -117,18 +118,7 @@ public class JapexNativeDriver extends JapexDriverBase {
         }        
         
         // Accumulate actual number of iterations
-        synchronized (tc) {
-            long runIterationsSum =  
-                tc.hasParam(Constants.RUN_ITERATIONS_SUM) ? 
-                    tc.getLongParam(Constants.RUN_ITERATIONS_SUM) : 0L;
-            tc.setLongParam(Constants.RUN_ITERATIONS_SUM, 
-                            runIterationsSum + runIterations);
-            double runTimeSum =
-                tc.hasParam(Constants.RUN_TIME_SUM) ?
-                    tc.getDoubleParam(Constants.RUN_TIME_SUM) : 0.0;
-            tc.setDoubleParam(Constants.RUN_TIME_SUM,
-                              runTimeSum + duration);
-        }        
+        accumulateResult(runIterations, duration);
         
         if (Japex.verbose) {
             System.out.println("               " + 
@@ -63,6 +63,7 @@ public class FastInfosetDOMDriver extends JAXPDOMDriver implements FastInfosetPa
             _inputStream.reset();
             Document d = _builder.newDocument();
             _ddp.parse(d, _inputStream);
+            consume(d);
         }
         catch (Exception e) {
             e.printStackTrace();
@@ -86,15 +86,14 @@ public class JAXPDOMDriver extends BaseParserDriver {
         }
     }    
     
-    @SuppressWarnings("unused")
-	public void traverse(Node n) {
-        Object o = n.getNodeValue();
+    public void traverse(Node n) {
+        consume(n.getNodeValue());
         
         if (n.hasAttributes()) {
             final NamedNodeMap nnm = n.getAttributes();
             for (int i = 0; i < nnm.getLength(); i++) {
                 final Node an = nnm.item(i);
-                o = an.getNodeValue();
+                consume(an.getNodeValue());
             }
         }
         
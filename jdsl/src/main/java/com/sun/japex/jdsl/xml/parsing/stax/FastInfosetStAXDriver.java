@@ -59,35 +59,30 @@ public class FastInfosetStAXDriver extends BaseParserDriver implements FastInfos
         return _staxParser;
     }
     
-    @SuppressWarnings("unused")
-	public void run(TestCase testCase) {
+    public void run(TestCase testCase) {
         try {
             _inputStream.reset();
             _staxParser.setInputStream(_inputStream);       // Instead of creating new instance
             
-            char[] text;
-            int acount, ncount;
-            String local, prefix, uri;
-            
             while (_staxParser.hasNext()) {
                 int event = _staxParser.next();
-                _staxParser.getEventType();
+                consume(_staxParser.getEventType());
                 switch (event) {
                     case XMLStreamReader.START_ELEMENT:
-                        local = _staxParser.getLocalName();
-                        prefix = _staxParser.getPrefix();
-                        uri = _staxParser.getNamespaceURI();
-                        acount = _staxParser.getAttributeCount();
-                        ncount = _staxParser.getNamespaceCount();
+                        consume(_staxParser.getLocalName());
+                        consume(_staxParser.getPrefix());
+                        consume(_staxParser.getNamespaceURI());
+                        consume(_staxParser.getAttributeCount());
+                        consume(_staxParser.getNamespaceCount());
                         break;
                     case XMLStreamReader.END_ELEMENT:
-                        local = _staxParser.getLocalName();
-                        prefix = _staxParser.getPrefix();
-                        uri = _staxParser.getNamespaceURI();
+                        consume(_staxParser.getLocalName());
+                        consume(_staxParser.getPrefix());
+                        consume(_staxParser.getNamespaceURI());
                         break;
                     case XMLStreamReader.CHARACTERS:
                     case XMLStreamReader.SPACE:
-                        text = _staxParser.getTextCharacters();
+                        consume(_staxParser.getTextCharacters());
                         break;
                     default:
                         break;
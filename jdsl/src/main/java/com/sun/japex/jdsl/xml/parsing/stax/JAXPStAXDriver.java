@@ -63,39 +63,34 @@ public class JAXPStAXDriver extends BaseParserDriver {
         }
     }   
         
-    @SuppressWarnings("unused")
-	public void run(TestCase testCase) {
+    public void run(TestCase testCase) {
         try {
             _inputStream.reset();
             XMLStreamReader reader = getXMLStreamReader();
             
-            char[] text;
-            int acount, ncount;
-            String local, prefix, uri;
-            
             while (reader.hasNext()) {
                 int event = reader.next();
                 
                 // If nextOnly set, don't call any getters
                 if (_nextOnly) continue;
                 
-                reader.getEventType();
+                consume(reader.getEventType());
                 switch (event) {
                     case XMLStreamReader.START_ELEMENT:
-                        local = reader.getLocalName();
-                        prefix = reader.getPrefix();
-                        uri = reader.getNamespaceURI();
-                        acount = reader.getAttributeCount();
-                        ncount = reader.getNamespaceCount();
+                        consume(reader.getLocalName());
+                        consume(reader.getPrefix());
+                        consume(reader.getNamespaceURI());
+                        consume(reader.getAttributeCount());
+                        consume(reader.getNamespaceCount());
                         break;
                     case XMLStreamReader.END_ELEMENT:
-                        local = reader.getLocalName();
-                        prefix = reader.getPrefix();
-                        uri = reader.getNamespaceURI();
+                        consume(reader.getLocalName());
+                        consume(reader.getPrefix());
+                        consume(reader.getNamespaceURI());
                         break;
                     case XMLStreamReader.CHARACTERS:
                     case XMLStreamReader.SPACE:
-                        text = reader.getTextCharacters();
+                        consume(reader.getTextCharacters());
                         break;
                     default:
                         break;